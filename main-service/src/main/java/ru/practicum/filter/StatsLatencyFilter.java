@@ -0,0 +1,54 @@
+package ru.practicum.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.StatsClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class StatsLatencyFilter extends OncePerRequestFilter {
+    private static final List<String> PUBLIC_PREFIXES = List.of("/events", "/categories", "/compilations");
+
+    private final StatsClient statsClient;
+    private final boolean enabled;
+
+    public StatsLatencyFilter(StatsClient statsClient,
+                              @Value("${services.stats-service.latency.enabled:true}") boolean enabled) {
+        this.statsClient = statsClient;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        return PUBLIC_PREFIXES.stream().noneMatch(prefix -> uri.equals(prefix) || uri.startsWith(prefix + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        chain.doFilter(request, response);
+        if (response.getStatus() >= 400) {
+            return;
+        }
+        try {
+            statsClient.latency(request, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось отправить время ответа в сервис статистики: {}", e.getMessage());
+        }
+    }
+}
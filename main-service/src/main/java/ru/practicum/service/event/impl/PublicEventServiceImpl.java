@@ -8,6 +8,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatsClient;
 import ru.practicum.ViewStats;
+import ru.practicum.ViewStatsBatchRequest;
 import ru.practicum.ViewStatsRequest;
 import ru.practicum.exception.BadRequestException;
 import ru.practicum.mapper.EventMapper;
@@ -95,11 +96,15 @@ public class PublicEventServiceImpl implements PublicEventService {
             return Collections.emptyList();
         }
 
-        List<String> uris = events.stream().map(event -> "/events/" + event.getId()).toList();
-        List<ViewStats> stats = statsClient.getStats(ViewStatsRequest.builder()
-                .start(rangeStart)
-                .end(rangeEnd)
-                .uris(uris)
+        List<ViewStats> stats = statsClient.getStatsBatch(ViewStatsBatchRequest.builder()
+                .end(LocalDateTime.now())
+                .ranges(events.stream()
+                        .filter(event -> event.getPublishedOn() != null)
+                        .map(event -> ViewStatsBatchRequest.UriStart.builder()
+                                .uri("/events/" + event.getId())
+                                .start(event.getPublishedOn())
+                                .build())
+                        .toList())
                 .unique(true)
                 .build());
 
@@ -0,0 +1,190 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+class HitSender {
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ShardMap shardMap;
+    private final ObjectMapper json;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final String path;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration linger;
+    private final OverflowPolicy overflowPolicy;
+    private final Map<String, HitSpool> spools;
+    private final Queue<EndpointHit> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final Semaphore sendPermits;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    HitSender(ShardMap shardMap, ObjectMapper json, HttpClient httpClient, Duration requestTimeout, String path,
+              int capacity, int batchSize, Duration linger, int maxInFlight, OverflowPolicy overflowPolicy,
+              Map<String, HitSpool> spools) {
+        this.shardMap = shardMap;
+        this.json = json;
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+        this.path = path;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.overflowPolicy = overflowPolicy;
+        this.spools = spools;
+        this.sendPermits = new Semaphore(maxInFlight);
+        this.thread = new Thread(this::run, "stats-sender" + path.replace('/', '-'));
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void enqueue(EndpointHit hit) {
+        while (!reserve()) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                drop(1);
+                return;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        queue.offer(hit);
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    void close(Duration timeout) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeout.toMillis());
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Не все хиты отправлены в сервис статистики при остановке: {}", e.getMessage());
+        }
+        List<EndpointHit> left = new ArrayList<>();
+        EndpointHit hit;
+        while ((hit = queue.poll()) != null) {
+            left.add(hit);
+        }
+        if (!left.isEmpty()) {
+            shardMap.group(left, EndpointHit::getUri).forEach(this::fail);
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void run() {
+        while (running || size.get() > 0) {
+            if (running && size.get() < batchSize) {
+                LockSupport.parkNanos(linger.toNanos());
+            }
+            List<EndpointHit> batch = new ArrayList<>(batchSize);
+            EndpointHit hit;
+            while (batch.size() < batchSize && (hit = queue.poll()) != null) {
+                batch.add(hit);
+                size.decrementAndGet();
+            }
+            if (!batch.isEmpty()) {
+                shardMap.group(batch, EndpointHit::getUri).forEach(this::send);
+            }
+        }
+    }
+
+    private void send(String shard, List<EndpointHit> hits) {
+        HitSpool spool = spools.get(shard);
+        if (spool != null && spool.hasBacklog()) {
+            spool.append(hits);
+            return;
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(URI.create(shard + path))
+                    .timeout(requestTimeout)
+                    .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(hits)))
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .build();
+        } catch (JsonProcessingException e) {
+            log.error("Не удалось сериализовать пачку из {} хитов", hits.size(), e);
+            drop(hits.size());
+            return;
+        }
+        sendPermits.acquireUninterruptibly();
+        CompletableFuture<HttpResponse<Void>> future = httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.discarding());
+        inFlight.add(future);
+        future.whenComplete((response, error) -> {
+            inFlight.remove(future);
+            sendPermits.release();
+            if (error != null) {
+                log.warn("Не удалось отправить {} хитов в {}: {}", hits.size(), shard, error.getMessage());
+                fail(shard, hits);
+            } else if (response.statusCode() >= 500) {
+                log.warn("Сервис статистики {} недоступен для {} хитов: {}", shard, hits.size(),
+                        response.statusCode());
+                fail(shard, hits);
+            } else if (response.statusCode() >= 300) {
+                log.warn("Сервис статистики {} отклонил {} хитов: {}", shard, hits.size(), response.statusCode());
+                drop(hits.size());
+            }
+        });
+    }
+
+    private void fail(String shard, List<EndpointHit> hits) {
+        HitSpool spool = spools.get(shard);
+        if (spool != null) {
+            spool.append(hits);
+        } else {
+            drop(hits.size());
+        }
+    }
+
+    private void drop(int count) {
+        long total = dropped.addAndGet(count);
+        if (total == count || total / 1000 != (total - count) / 1000) {
+            log.warn("Отброшено хитов, не отправленных в сервис статистики: {}", total);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+@Slf4j
+class HitSpool {
+    private static final String SUFFIX = ".spool";
+    private static final String CURSOR = "replay.cursor";
+    private static final int HEADER = Integer.BYTES;
+    private static final TypeReference<List<EndpointHit>> HITS = new TypeReference<>() {
+    };
+
+    private final Path dir;
+    private final long segmentSize;
+    private final long maxSize;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final ObjectMapper json;
+    private final Predicate<List<EndpointHit>> delivery;
+    private final Object lock = new Object();
+    private final Thread replayer;
+
+    private FileChannel active;
+    private long activeSeq;
+    private long cursorSeq;
+    private long cursorPosition;
+    private volatile long size;
+    private volatile long pending;
+    private volatile boolean running = true;
+
+    HitSpool(Path dir, long segmentSize, long maxSize, Duration minBackoff, Duration maxBackoff,
+             ObjectMapper json, Predicate<List<EndpointHit>> delivery) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.json = json;
+        this.delivery = delivery;
+        try {
+            Files.createDirectories(dir);
+            List<Long> segments = segments();
+            for (long seq : segments) {
+                size += Files.size(segment(seq));
+                activeSeq = seq;
+            }
+            readCursor(segments);
+            pending = size;
+            if (!segments.isEmpty() && segments.getFirst() == cursorSeq) {
+                pending -= Math.min(cursorPosition, Files.size(segment(cursorSeq)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть спул хитов " + dir, e);
+        }
+        if (pending > 0) {
+            log.info("В спуле {} найдено {} байт неотправленных хитов", dir, pending);
+        }
+        this.replayer = new Thread(this::replay, "stats-hit-spool");
+        this.replayer.setDaemon(true);
+        this.replayer.start();
+    }
+
+    boolean hasBacklog() {
+        return pending > 0;
+    }
+
+    void append(List<EndpointHit> hits) {
+        byte[] body;
+        try {
+            body = json.writeValueAsBytes(hits);
+        } catch (IOException e) {
+            log.error("Не удалось сериализовать {} хитов для спула", hits.size(), e);
+            return;
+        }
+        int length = HEADER + body.length;
+        synchronized (lock) {
+            if (size + length > maxSize) {
+                log.warn("Спул хитов {} заполнен ({} байт), отброшено {} хитов", dir, size, hits.size());
+                return;
+            }
+            try {
+                if (active == null || active.size() + length > segmentSize) {
+                    rotate();
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(length)
+                        .putInt(body.length)
+                        .put(body)
+                        .flip();
+                while (buffer.hasRemaining()) {
+                    active.write(buffer);
+                }
+                size += length;
+                pending += length;
+            } catch (IOException e) {
+                log.error("Не удалось записать {} хитов в спул {}", hits.size(), dir, e);
+            }
+        }
+    }
+
+    void close() {
+        running = false;
+        LockSupport.unpark(replayer);
+        try {
+            replayer.join(maxBackoff.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            closeActive();
+        }
+    }
+
+    private void replay() {
+        Duration backoff = minBackoff;
+        while (running) {
+            List<EndpointHit> hits;
+            try {
+                hits = next();
+            } catch (IOException e) {
+                log.error("Не удалось прочитать спул хитов {}", dir, e);
+                hits = null;
+            }
+            if (hits == null) {
+                LockSupport.parkNanos(minBackoff.toNanos());
+                continue;
+            }
+            if (delivery.test(hits)) {
+                advance();
+                backoff = minBackoff;
+            } else {
+                LockSupport.parkNanos(backoff.toNanos());
+                backoff = backoff.multipliedBy(2).compareTo(maxBackoff) > 0 ? maxBackoff : backoff.multipliedBy(2);
+            }
+        }
+    }
+
+    private List<EndpointHit> next() throws IOException {
+        synchronized (lock) {
+            while (true) {
+                List<Long> segments = segments();
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                long seq = segments.getFirst();
+                if (seq != cursorSeq) {
+                    moveCursor(seq, 0);
+                }
+                Path path = segment(seq);
+                boolean writing = active != null && seq == activeSeq;
+                if (writing && active.size() <= cursorPosition) {
+                    return null;
+                }
+                long fileSize = Files.size(path);
+                if (cursorPosition >= fileSize) {
+                    if (writing) {
+                        return null;
+                    }
+                    remove(path, fileSize);
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER);
+                    channel.read(header, cursorPosition);
+                    int length = header.flip().remaining() == HEADER ? header.getInt() : -1;
+                    if (length <= 0 || cursorPosition + HEADER + length > fileSize) {
+                        log.error("Повреждённая запись в спуле {} на позиции {}, сегмент пропущен", path,
+                                cursorPosition);
+                        if (writing) {
+                            closeActive();
+                        }
+                        remove(path, fileSize);
+                        continue;
+                    }
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    long position = cursorPosition + HEADER;
+                    while (body.hasRemaining() && channel.read(body, position + body.position()) >= 0) {
+                        Thread.onSpinWait();
+                    }
+                    return json.readValue(body.array(), HITS);
+                }
+            }
+        }
+    }
+
+    private void advance() {
+        synchronized (lock) {
+            Path path = segment(cursorSeq);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                channel.read(header, cursorPosition);
+                int length = HEADER + header.flip().getInt();
+                pending -= length;
+                moveCursor(cursorSeq, cursorPosition + length);
+                boolean writing = active != null && cursorSeq == activeSeq;
+                if (!writing && cursorPosition >= channel.size()) {
+                    remove(path, channel.size());
+                }
+            } catch (IOException e) {
+                log.error("Не удалось сдвинуть курсор спула {}", dir, e);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeActive();
+        activeSeq++;
+        active = FileChannel.open(segment(activeSeq), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void closeActive() {
+        if (active == null) {
+            return;
+        }
+        try {
+            active.force(true);
+            active.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть сегмент спула {}: {}", activeSeq, e.getMessage());
+        }
+        active = null;
+    }
+
+    private void remove(Path path, long fileSize) throws IOException {
+        Files.deleteIfExists(path);
+        size -= fileSize;
+        pending -= Math.max(fileSize - cursorPosition, 0);
+        moveCursor(cursorSeq + 1, 0);
+    }
+
+    private void moveCursor(long seq, long position) {
+        cursorSeq = seq;
+        cursorPosition = position;
+        try {
+            Path temp = dir.resolve(CURSOR + ".tmp");
+            Files.writeString(temp, seq + " " + position, StandardCharsets.UTF_8);
+            Files.move(temp, dir.resolve(CURSOR), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить курсор спула {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void readCursor(List<Long> segments) throws IOException {
+        Path path = dir.resolve(CURSOR);
+        if (!Files.exists(path)) {
+            return;
+        }
+        String content = Files.readString(path, StandardCharsets.UTF_8).trim();
+        try {
+            String[] parts = content.split(" ");
+            cursorSeq = Long.parseLong(parts[0]);
+            cursorPosition = Long.parseLong(parts[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            log.warn("Курсор спула {} не читается ('{}'), воспроизведение начнётся с первого сегмента", dir, content);
+            cursorSeq = segments.isEmpty() ? 0 : segments.getFirst();
+            cursorPosition = 0;
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segment(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SUFFIX));
+    }
+}
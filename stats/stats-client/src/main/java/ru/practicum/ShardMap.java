@@ -0,0 +1,68 @@
+package ru.practicum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+class ShardMap {
+    private final List<String> shards;
+
+    ShardMap(String statsServiceUri, String shards) {
+        List<String> configured = Arrays.stream(shards.split(","))
+                .map(String::trim)
+                .filter(shard -> !shard.isEmpty())
+                .toList();
+        this.shards = configured.isEmpty() ? List.of(statsServiceUri) : configured;
+    }
+
+    List<String> all() {
+        return shards;
+    }
+
+    String forUri(String uri) {
+        if (shards.size() == 1) {
+            return shards.getFirst();
+        }
+        byte[] key = uri.getBytes(StandardCharsets.UTF_8);
+        String owner = null;
+        long best = 0;
+        for (String shard : shards) {
+            long weight = weight(shard, key);
+            if (owner == null || Long.compareUnsigned(weight, best) > 0) {
+                owner = shard;
+                best = weight;
+            }
+        }
+        return owner;
+    }
+
+    <T> Map<String, List<T>> group(Collection<T> items, Function<T, String> uri) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(forUri(uri.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private static long weight(String shard, byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : shard.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        hash = (hash ^ '#') * 0x100000001b3L;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -1,45 +1,105 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Component
 public class StatsClient {
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_QUERY_LENGTH = 2048;
+    private static final TypeReference<List<ViewStats>> VIEWS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<ViewTimeSeries>> SERIES = new TypeReference<>() {
+    };
+    private static final TypeReference<List<LatencyStats>> LATENCY = new TypeReference<>() {
+    };
 
     private final String application;
-    private final String statsServiceUri;
+    private final ShardMap shardMap;
     private final ObjectMapper json;
     private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final Map<String, HitSpool> spools;
+    private final HitSender hitSender;
+    private final HitSender latencySender;
 
     public StatsClient(@Value("${spring.application.name}") String application,
                        @Value("${services.stats-service.uri:http://localhost:9090}") String statsServiceUri,
+                       @Value("${services.stats-service.shards:}") String shards,
+                       @Value("${services.stats-service.request-timeout:PT5S}") Duration requestTimeout,
+                       @Value("${services.stats-service.hit.mode:sync}") String hitMode,
+                       @Value("${services.stats-service.hit.capacity:10000}") int capacity,
+                       @Value("${services.stats-service.hit.batch-size:100}") int batchSize,
+                       @Value("${services.stats-service.hit.linger:PT0.2S}") Duration linger,
+                       @Value("${services.stats-service.hit.max-in-flight:4}") int maxInFlight,
+                       @Value("${services.stats-service.hit.overflow:drop}") OverflowPolicy overflow,
+                       @Value("${services.stats-service.latency.enabled:true}") boolean latencyEnabled,
+                       @Value("${services.stats-service.spool.dir:}") String spoolDir,
+                       @Value("${services.stats-service.spool.segment-size:8MB}") DataSize segmentSize,
+                       @Value("${services.stats-service.spool.max-size:256MB}") DataSize maxSpoolSize,
+                       @Value("${services.stats-service.spool.backoff:PT1S}") Duration backoff,
+                       @Value("${services.stats-service.spool.max-backoff:PT1M}") Duration maxBackoff,
                        ObjectMapper json) {
         this.application = application;
-        this.statsServiceUri = statsServiceUri;
+        this.shardMap = new ShardMap(statsServiceUri, shards);
         this.json = json;
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(2))
                 .build();
+        this.requestTimeout = requestTimeout;
+        this.spools = spoolDir.isBlank()
+                ? Map.of()
+                : openSpools(Path.of(spoolDir), segmentSize.toBytes(), maxSpoolSize.toBytes(), backoff, maxBackoff);
+        this.hitSender = "async".equalsIgnoreCase(hitMode)
+                ? new HitSender(shardMap, json, httpClient, requestTimeout, "/hits", capacity, batchSize, linger,
+                        maxInFlight, overflow, spools)
+                : null;
+        this.latencySender = latencyEnabled
+                ? new HitSender(shardMap, json, httpClient, requestTimeout, "/latency", capacity, batchSize, linger,
+                        maxInFlight, OverflowPolicy.DROP, Map.of())
+                : null;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (hitSender != null) {
+            hitSender.close(Duration.ofSeconds(5));
+        }
+        if (latencySender != null) {
+            latencySender.close(Duration.ofSeconds(5));
+        }
+        spools.values().forEach(HitSpool::close);
     }
 
     public void hit(HttpServletRequest userRequest) {
@@ -49,42 +109,245 @@ public class StatsClient {
                 .ip(userRequest.getRemoteAddr())
                 .timestamp(LocalDateTime.now())
                 .build();
+        if (hitSender != null) {
+            hitSender.enqueue(hit);
+            return;
+        }
+        String shard = shardMap.forUri(hit.getUri());
+        HitSpool spool = spools.get(shard);
+        if (spool != null && spool.hasBacklog()) {
+            spool.append(List.of(hit));
+            return;
+        }
         try {
             HttpRequest.BodyPublisher bodyPublisher = HttpRequest
                     .BodyPublishers
                     .ofString(json.writeValueAsString(hit));
-            HttpRequest hitRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(statsServiceUri + "/hit"))
+            HttpRequest hitRequest = newRequest(shard + "/hit")
                     .POST(bodyPublisher)
                     .header(HttpHeaders.CONTENT_TYPE, "application/json")
                     .header(HttpHeaders.ACCEPT, "application/json")
                     .build();
 
             HttpResponse<Void> response = httpClient.send(hitRequest, HttpResponse.BodyHandlers.discarding());
+            if (spool != null && response.statusCode() >= 500) {
+                spool.append(List.of(hit));
+            }
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка при отправке запроса на сохранение статистики", e);
+            if (spool == null) {
+                throw new RuntimeException("Ошибка при отправке запроса на сохранение статистики", e);
+            }
+            spool.append(List.of(hit));
         }
     }
 
+    public void latency(HttpServletRequest userRequest, long responseTimeMs) {
+        if (latencySender == null) {
+            return;
+        }
+        EndpointHit hit = EndpointHit.builder()
+                .app(application)
+                .uri(userRequest.getRequestURI())
+                .ip(userRequest.getRemoteAddr())
+                .timestamp(LocalDateTime.now())
+                .responseTimeMs(responseTimeMs)
+                .build();
+        latencySender.enqueue(hit);
+    }
+
     public List<ViewStats> getStats(ViewStatsRequest request) {
         try {
-            String queryString = toQueryString(request);
+            List<CompletableFuture<List<ViewStats>>> responses = new ArrayList<>();
+            for (Map.Entry<String, ViewStatsRequest> part : splitByShard(request).entrySet()) {
+                responses.add(sendAsync(statsRequest(part.getKey(), part.getValue()), VIEWS));
+            }
+            return mergeViews(gather(responses), request.getLimit());
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении статистики", e);
+        }
+    }
 
-            HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(statsServiceUri + "/stats" + queryString))
-                    .header(HttpHeaders.ACCEPT, "application/json")
-                    .build();
+    public List<ViewStats> getStatsBatch(ViewStatsBatchRequest request) {
+        if (request.getRanges().isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            List<CompletableFuture<List<ViewStats>>> responses = new ArrayList<>();
+            for (Map.Entry<String, List<ViewStatsBatchRequest.UriStart>> part
+                    : shardMap.group(request.getRanges(), ViewStatsBatchRequest.UriStart::getUri).entrySet()) {
+                ViewStatsBatchRequest shardRequest = request.toBuilder()
+                        .clearRanges()
+                        .ranges(part.getValue())
+                        .build();
+                responses.add(sendAsync(newRequest(part.getKey() + "/stats/batch")
+                        .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(shardRequest)))
+                        .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .header(HttpHeaders.ACCEPT, "application/json")
+                        .build(), VIEWS));
+            }
+            return mergeViews(gather(responses), null);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении статистики", e);
+        }
+    }
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+    public List<ViewTimeSeries> getTimeSeries(ViewStatsRequest request, String bucket) {
+        try {
+            List<CompletableFuture<List<ViewTimeSeries>>> responses = new ArrayList<>();
+            for (Map.Entry<String, ViewStatsRequest> part : splitByShard(request).entrySet()) {
+                responses.add(sendAsync(newRequest(part.getKey() + "/stats/timeseries"
+                                + toQueryString(part.getValue())
+                                + "&bucket=" + URLEncoder.encode(bucket, StandardCharsets.UTF_8))
+                        .header(HttpHeaders.ACCEPT, "application/json")
+                        .build(), SERIES));
+            }
+            return gather(responses);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении статистики по интервалам", e);
+        }
+    }
 
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                return json.readValue(response.body(), new TypeReference<>() {
-                });
+    public List<LatencyStats> getLatency(ViewStatsRequest request) {
+        try {
+            List<CompletableFuture<List<LatencyStats>>> responses = new ArrayList<>();
+            for (Map.Entry<String, ViewStatsRequest> part : splitByShard(request).entrySet()) {
+                responses.add(sendAsync(newRequest(part.getKey() + "/stats/latency"
+                                + toQueryString(part.getValue()))
+                        .header(HttpHeaders.ACCEPT, "application/json")
+                        .build(), LATENCY));
             }
+            return gather(responses);
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка при получении статистики", e);
+            throw new RuntimeException("Ошибка при получении времени ответа", e);
+        }
+    }
+
+    public List<ViewStats> getTop(String window, int limit) {
+        try {
+            List<CompletableFuture<List<ViewStats>>> responses = new ArrayList<>();
+            for (String shard : shardMap.all()) {
+                responses.add(sendAsync(newRequest(shard + "/stats/top?window="
+                                + URLEncoder.encode(window, StandardCharsets.UTF_8) + "&limit=" + limit)
+                        .header(HttpHeaders.ACCEPT, "application/json")
+                        .build(), VIEWS));
+            }
+            return mergeViews(gather(responses), limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при получении популярных адресов", e);
         }
-        return Collections.emptyList();
+    }
+
+    private Map<String, HitSpool> openSpools(Path dir, long segmentSize, long maxSize, Duration backoff,
+                                             Duration maxBackoff) {
+        long shardMaxSize = maxSize / shardMap.all().size();
+        Map<String, HitSpool> result = new LinkedHashMap<>();
+        for (String shard : shardMap.all()) {
+            result.put(shard, new HitSpool(dir.resolve(spoolName(shard)), segmentSize, shardMaxSize, backoff,
+                    maxBackoff, json, hits -> deliverSpooled(shard, hits)));
+        }
+        return result;
+    }
+
+    private static String spoolName(String shard) {
+        return shard.replaceFirst("^[a-zA-Z]+://", "").replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    private boolean deliverSpooled(String shard, List<EndpointHit> hits) {
+        try {
+            HttpResponse<Void> response = httpClient.send(newRequest(shard + "/hits")
+                    .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(hits)))
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 500;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Map<String, ViewStatsRequest> splitByShard(ViewStatsRequest request) {
+        Map<String, ViewStatsRequest> parts = new LinkedHashMap<>();
+        List<String> uris = request.getUris() == null ? List.of() : request.getUris();
+        if (uris.isEmpty() || uris.stream().anyMatch(uri -> uri.contains("*"))) {
+            shardMap.all().forEach(shard -> parts.put(shard, request));
+            return parts;
+        }
+        shardMap.group(uris, uri -> uri).forEach((shard, shardUris) -> parts.put(shard, request.toBuilder()
+                .clearUris()
+                .uris(shardUris)
+                .build()));
+        return parts;
+    }
+
+    private HttpRequest statsRequest(String shard, ViewStatsRequest request) throws JsonProcessingException {
+        String queryString = toQueryString(request);
+        if (queryString.length() <= MAX_QUERY_LENGTH) {
+            return newRequest(shard + "/stats" + queryString)
+                    .header(HttpHeaders.ACCEPT, "application/json")
+                    .build();
+        }
+        return newRequest(shard + "/stats")
+                .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(request)))
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .header(HttpHeaders.ACCEPT, "application/json")
+                .build();
+    }
+
+    private HttpRequest.Builder newRequest(String uri) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .timeout(requestTimeout);
+    }
+
+    private <T> CompletableFuture<List<T>> sendAsync(HttpRequest request, TypeReference<List<T>> type) {
+        String shard = request.uri().getHost() + ":" + request.uri().getPort();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    Optional<String> retryAfter = response.headers().firstValue(HttpHeaders.RETRY_AFTER);
+                    if (response.statusCode() == 503 && retryAfter.isPresent()) {
+                        log.info("Шард {} перегружен (Retry-After: {}), статистика не получена", shard,
+                                retryAfter.get());
+                        return Collections.<T>emptyList();
+                    }
+                    if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                        log.warn("Шард {} ответил {}, его данные не вошли в результат", shard,
+                                response.statusCode());
+                        return Collections.<T>emptyList();
+                    }
+                    try {
+                        return json.readValue(response.body(), type);
+                    } catch (JsonProcessingException e) {
+                        throw new CompletionException(e);
+                    }
+                })
+                .exceptionally(e -> {
+                    log.warn("Шард {} недоступен, его данные не вошли в результат: {}", shard, e.getMessage());
+                    return Collections.emptyList();
+                });
+    }
+
+    private <T> List<T> gather(List<CompletableFuture<List<T>>> responses) {
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        List<T> result = new ArrayList<>();
+        responses.forEach(response -> result.addAll(response.join()));
+        return result;
+    }
+
+    private List<ViewStats> mergeViews(List<ViewStats> views, Integer limit) {
+        Map<List<String>, Long> hits = views.stream()
+                .collect(Collectors.toMap(view -> List.of(view.getApp(), view.getUri()), ViewStats::getHits,
+                        Long::sum, LinkedHashMap::new));
+        return hits.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(entry.getKey().get(0))
+                        .uri(entry.getKey().get(1))
+                        .hits(entry.getValue())
+                        .build())
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .toList();
     }
 
     private String toQueryString(ViewStatsRequest request) {
@@ -92,6 +355,11 @@ public class StatsClient {
         params.put("start", URLEncoder.encode(request.getStart().format(DTF), StandardCharsets.UTF_8));
         params.put("end", URLEncoder.encode(request.getEnd().format(DTF), StandardCharsets.UTF_8));
         params.put("unique", String.valueOf(request.isUnique()));
+        params.put("uniqueMode", request.getUniqueMode().name());
+        params.put("accuracy", request.getAccuracy().name());
+        if (request.getLimit() != null) {
+            params.put("limit", String.valueOf(request.getLimit()));
+        }
 
         String paramString = params.entrySet().stream()
                 .map(entry -> entry.getKey() + "=" + entry.getValue())
@@ -0,0 +1,156 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitSpoolTest {
+    private static final Duration BACKOFF = Duration.ofMillis(10);
+    private static final Duration MAX_BACKOFF = Duration.ofMillis(50);
+
+    private final ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rotatesSegmentsAndReplaysInOrder() throws IOException {
+        HitSpool spool = open(1024, hits -> false);
+        for (int i = 0; i < 20; i++) {
+            spool.append(List.of(hit(i)));
+        }
+        spool.close();
+        assertThat(segmentCount()).isGreaterThan(1);
+
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        HitSpool replay = open(1024, hits -> delivered.add(hits.getFirst().getUri()));
+        await(() -> delivered.size() == 20);
+        await(() -> !replay.hasBacklog());
+        replay.close();
+
+        assertThat(delivered).containsExactlyElementsOf(uris(0, 20));
+        assertThat(segmentCount()).isZero();
+    }
+
+    @Test
+    void resumesFromCursorAfterRestart() {
+        List<String> first = new CopyOnWriteArrayList<>();
+        HitSpool spool = open(1 << 20, hits -> first.size() < 2 && first.add(hits.getFirst().getUri()));
+        for (int i = 0; i < 4; i++) {
+            spool.append(List.of(hit(i)));
+        }
+        await(() -> first.size() == 2);
+        spool.close();
+
+        List<String> second = new CopyOnWriteArrayList<>();
+        HitSpool replay = open(1 << 20, hits -> second.add(hits.getFirst().getUri()));
+        await(() -> second.size() == 2);
+        replay.close();
+
+        assertThat(first).containsExactlyElementsOf(uris(0, 2));
+        assertThat(second).containsExactlyElementsOf(uris(2, 4));
+    }
+
+    @Test
+    void skipsCorruptTail() throws IOException {
+        HitSpool spool = open(1 << 20, hits -> false);
+        for (int i = 0; i < 3; i++) {
+            spool.append(List.of(hit(i)));
+        }
+        spool.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            Path segment = files.filter(path -> path.toString().endsWith(".spool")).findFirst().orElseThrow();
+            Files.write(segment, ByteBuffer.allocate(6).putInt(1000).array(), StandardOpenOption.APPEND);
+        }
+
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        HitSpool replay = open(1 << 20, hits -> delivered.add(hits.getFirst().getUri()));
+        await(() -> !replay.hasBacklog());
+        replay.close();
+
+        assertThat(delivered).containsExactlyElementsOf(uris(0, 3));
+        assertThat(segmentCount()).isZero();
+    }
+
+    @Test
+    void readsActiveSegmentWithoutRotation() throws IOException {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        HitSpool spool = open(1 << 20, hits -> delivered.add(hits.getFirst().getUri()));
+        for (int i = 0; i < 5; i++) {
+            spool.append(List.of(hit(i)));
+            int expected = i + 1;
+            await(() -> delivered.size() == expected);
+            await(() -> !spool.hasBacklog());
+        }
+        assertThat(spool.hasBacklog()).isFalse();
+        assertThat(segmentCount()).isEqualTo(1);
+        spool.close();
+
+        assertThat(delivered).containsExactlyElementsOf(uris(0, 5));
+    }
+
+    @Test
+    void replaysFromFirstSegmentWhenCursorIsUnreadable() throws IOException {
+        HitSpool spool = open(1 << 20, hits -> false);
+        for (int i = 0; i < 3; i++) {
+            spool.append(List.of(hit(i)));
+        }
+        spool.close();
+        Files.writeString(dir.resolve("replay.cursor"), "мусор");
+
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        HitSpool replay = open(1 << 20, hits -> delivered.add(hits.getFirst().getUri()));
+        assertThat(replay.hasBacklog()).isTrue();
+        await(() -> !replay.hasBacklog());
+        replay.close();
+
+        assertThat(delivered).containsExactlyElementsOf(uris(0, 3));
+    }
+
+    private HitSpool open(long segmentSize, Predicate<List<EndpointHit>> delivery) {
+        return new HitSpool(dir, segmentSize, 1 << 24, BACKOFF, MAX_BACKOFF, json, delivery);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".spool")).count();
+        }
+    }
+
+    private static EndpointHit hit(int i) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/" + i)
+                .ip("10.0.0.1")
+                .build();
+    }
+
+    private static List<String> uris(int from, int to) {
+        return Stream.iterate(from, i -> i + 1)
+                .limit(to - from)
+                .map(i -> "/events/" + i)
+                .toList();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("ожидание спула").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
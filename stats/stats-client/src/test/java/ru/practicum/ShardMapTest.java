@@ -0,0 +1,71 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardMapTest {
+    private static final List<String> URIS = IntStream.range(0, 10000)
+            .mapToObj(i -> "/events/" + i)
+            .toList();
+
+    @Test
+    void fallsBackToStatsServiceUri() {
+        ShardMap shardMap = new ShardMap("http://stats-server:9090", " , ");
+
+        assertThat(shardMap.all()).containsExactly("http://stats-server:9090");
+        assertThat(shardMap.forUri("/events/1")).isEqualTo("http://stats-server:9090");
+    }
+
+    @Test
+    void routesUriToSameShardRegardlessOfOrder() {
+        ShardMap first = new ShardMap("", "http://a:9090,http://b:9090,http://c:9090");
+        ShardMap reordered = new ShardMap("", "http://c:9090, http://a:9090, http://b:9090");
+
+        for (String uri : URIS) {
+            assertThat(reordered.forUri(uri)).isEqualTo(first.forUri(uri));
+        }
+    }
+
+    @Test
+    void spreadsUrisEvenly() {
+        ShardMap shardMap = new ShardMap("", "http://a:9090,http://b:9090,http://c:9090");
+
+        Map<String, Long> counts = URIS.stream()
+                .collect(Collectors.groupingBy(shardMap::forUri, Collectors.counting()));
+
+        assertThat(counts).hasSize(3);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(3000L, 3700L));
+    }
+
+    @Test
+    void movesOnlyUrisOfAddedShard() {
+        ShardMap before = new ShardMap("", "http://a:9090,http://b:9090,http://c:9090");
+        ShardMap after = new ShardMap("", "http://a:9090,http://b:9090,http://c:9090,http://d:9090");
+
+        long moved = 0;
+        for (String uri : URIS) {
+            String owner = after.forUri(uri);
+            if (!owner.equals(before.forUri(uri))) {
+                assertThat(owner).isEqualTo("http://d:9090");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(2000L, 3000L);
+    }
+
+    @Test
+    void groupsItemsByShard() {
+        ShardMap shardMap = new ShardMap("", "http://a:9090,http://b:9090");
+
+        Map<String, List<String>> groups = shardMap.group(URIS.subList(0, 100), uri -> uri);
+
+        assertThat(groups.values().stream().mapToInt(List::size).sum()).isEqualTo(100);
+        groups.forEach((shard, uris) -> assertThat(uris).allMatch(uri -> shardMap.forUri(uri).equals(shard)));
+    }
+}
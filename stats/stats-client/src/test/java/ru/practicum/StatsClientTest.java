@@ -0,0 +1,116 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class StatsClientTest {
+    private final ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private StatsClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void sumsRowsOfSameUriFromDifferentShards() throws IOException {
+        String first = shard(200, Map.of(), """
+                [{"app":"ewm","uri":"/events/1","hits":3},{"app":"ewm","uri":"/events/2","hits":4}]""");
+        String second = shard(200, Map.of(), """
+                [{"app":"ewm","uri":"/events/1","hits":2}]""");
+        client = client(first + "," + second);
+
+        List<ViewStats> views = client.getStats(request());
+
+        assertThat(views).extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 5L), tuple("/events/2", 4L));
+    }
+
+    @Test
+    void skipsFailedShard() throws IOException {
+        String healthy = shard(200, Map.of(), """
+                [{"app":"ewm","uri":"/events/1","hits":3}]""");
+        String broken = shard(500, Map.of(), "");
+        client = client(healthy + "," + broken);
+
+        List<ViewStats> views = client.getStats(request());
+
+        assertThat(views).extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 3L));
+    }
+
+    @Test
+    void treatsOverloadedStatsServerAsNoStats() throws IOException {
+        String overloaded = shard(503, Map.of("Retry-After", "1"), "");
+        client = client(overloaded);
+
+        assertThat(client.getStats(request())).isEmpty();
+        assertThat(client.getStatsBatch(ViewStatsBatchRequest.builder()
+                .end(LocalDateTime.of(2026, 10, 19, 0, 0))
+                .range(ViewStatsBatchRequest.UriStart.builder()
+                        .uri("/events/1")
+                        .start(LocalDateTime.of(2026, 10, 18, 0, 0))
+                        .build())
+                .build())).isEmpty();
+    }
+
+    @Test
+    void keepsOtherShardsWhenOneIsOverloaded() throws IOException {
+        String healthy = shard(200, Map.of(), """
+                [{"app":"ewm","uri":"/events/1","hits":3}]""");
+        String overloaded = shard(503, Map.of("Retry-After", "1"), "");
+        client = client(healthy + "," + overloaded);
+
+        assertThat(client.getStats(request())).extracting(ViewStats::getUri, ViewStats::getHits)
+                .containsExactly(tuple("/events/1", 3L));
+    }
+
+    private ViewStatsRequest request() {
+        return ViewStatsRequest.builder()
+                .start(LocalDateTime.of(2026, 10, 18, 0, 0))
+                .end(LocalDateTime.of(2026, 10, 19, 0, 0))
+                .build();
+    }
+
+    private String shard(int status, Map<String, String> headers, String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private StatsClient client(String shards) {
+        return new StatsClient("ewm", "http://localhost:9090", shards, Duration.ofSeconds(2), "sync", 100, 10,
+                Duration.ofMillis(100), 1, OverflowPolicy.DROP, false, "", DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1), Duration.ofSeconds(1), Duration.ofSeconds(1), json);
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum;
+
+public enum Accuracy {
+    EXACT,
+    SAMPLED
+}
@@ -0,0 +1,19 @@
+package ru.practicum;
+
+import lombok.*;
+import lombok.extern.jackson.Jacksonized;
+
+@Getter
+@Builder
+@Jacksonized
+@AllArgsConstructor
+@NoArgsConstructor
+public class LatencyStats {
+    private String app;
+    private String uri;
+    private Long count;
+    private Long p50;
+    private Long p95;
+    private Long p99;
+    private Long max;
+}
@@ -0,0 +1,6 @@
+package ru.practicum;
+
+public enum UniqueMode {
+    EXACT,
+    APPROX
+}
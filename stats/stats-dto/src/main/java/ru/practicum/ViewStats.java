@@ -1,5 +1,6 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import lombok.extern.jackson.Jacksonized;
 
@@ -13,4 +14,13 @@ public class ViewStats {
     private String uri;
     private Long hits;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double errorBound;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long lowerBound;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long upperBound;
+
 }
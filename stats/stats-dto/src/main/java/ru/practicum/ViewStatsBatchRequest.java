@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Builder(toBuilder = true)
+@Jacksonized
+public class ViewStatsBatchRequest {
+    @NonNull
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private final LocalDateTime end;
+
+    @Singular
+    private final List<UriStart> ranges;
+
+    private final boolean unique;
+
+    @Getter
+    @Builder
+    @Jacksonized
+    public static class UriStart {
+        @NonNull
+        private final String uri;
+
+        @NonNull
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+        private final LocalDateTime start;
+    }
+}
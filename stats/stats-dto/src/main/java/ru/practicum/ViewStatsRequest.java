@@ -28,4 +28,12 @@ public class ViewStatsRequest {
     private final List<String> uris;
 
     private final boolean unique;
+
+    @Builder.Default
+    private final UniqueMode uniqueMode = UniqueMode.EXACT;
+
+    @Builder.Default
+    private final Accuracy accuracy = Accuracy.EXACT;
+
+    private final Integer limit;
 }
@@ -0,0 +1,35 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Builder
+@Jacksonized
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewTimeSeries {
+    private String app;
+    private String uri;
+    private List<Point> points;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double errorBound;
+
+    @Getter
+    @Builder
+    @Jacksonized
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Point {
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime bucket;
+        private Long hits;
+        private Long unique;
+    }
+}
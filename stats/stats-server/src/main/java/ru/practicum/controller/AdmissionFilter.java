@@ -0,0 +1,137 @@
+package ru.practicum.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+    private final boolean enabled;
+    private final Duration acquireTimeout;
+    private final String retryAfter;
+    private final Pool ingest;
+    private final Pool query;
+
+    public AdmissionFilter(MeterRegistry meterRegistry,
+                           @Value("${stats.admission.enabled:true}") boolean enabled,
+                           @Value("${stats.admission.ingest-permits:16}") int ingestPermits,
+                           @Value("${stats.admission.query-permits:8}") int queryPermits,
+                           @Value("${stats.admission.acquire-timeout:PT0.05S}") Duration acquireTimeout,
+                           @Value("${stats.admission.retry-after:PT1S}") Duration retryAfter) {
+        this.enabled = enabled;
+        this.acquireTimeout = acquireTimeout;
+        this.retryAfter = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+        this.ingest = new Pool("ingest", ingestPermits, meterRegistry);
+        this.query = new Pool("query", queryPermits, meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || poolFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Pool pool = poolFor(request);
+        if (!pool.tryAcquire(acquireTimeout)) {
+            pool.rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Сервис статистики перегружен");
+            return;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                pool.semaphore.release();
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private Pool poolFor(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.equals("/stats/live")) {
+            return null;
+        }
+        if (uri.equals("/stats") || uri.startsWith("/stats/")) {
+            return query;
+        }
+        if ("POST".equals(request.getMethod())
+                && (uri.equals("/hit") || uri.startsWith("/hits") || uri.equals("/latency"))) {
+            return ingest;
+        }
+        return null;
+    }
+
+    private static class Pool {
+        private final Semaphore semaphore;
+        private final Counter rejected;
+
+        Pool(String name, int permits, MeterRegistry meterRegistry) {
+            this.semaphore = new Semaphore(permits);
+            this.rejected = Counter.builder("stats.admission.rejected")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            Gauge.builder("stats.admission.in-flight", semaphore, s -> permits - s.availablePermits())
+                    .tag("pool", name)
+                    .register(meterRegistry);
+        }
+
+        boolean tryAcquire(Duration timeout) {
+            try {
+                return semaphore.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -1,15 +1,35 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.DisconnectedClientHelper;
+import ru.practicum.Accuracy;
 import ru.practicum.EndpointHit;
+import ru.practicum.LatencyStats;
+import ru.practicum.UniqueMode;
+import ru.practicum.ViewStatsBatchRequest;
 import ru.practicum.ViewStatsRequest;
+import ru.practicum.ViewTimeSeries;
+import ru.practicum.service.HitImportError;
+import ru.practicum.service.HitImportException;
+import ru.practicum.service.HitImportResult;
+import ru.practicum.service.HitImporter;
+import ru.practicum.service.ImportFormat;
+import ru.practicum.service.LiveHitStream;
 import ru.practicum.service.StatsService;
 import ru.practicum.ViewStats;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -23,6 +43,27 @@ public class StatsController {
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final StatsService service;
+    private final ObjectMapper objectMapper;
+    private final HitImporter hitImporter;
+    private final LiveHitStream liveHitStream;
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleInvalidHit() {
+    }
+
+    @ExceptionHandler(HitImportException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public HitImportError handleInvalidImport(HitImportException e) {
+        return new HitImportError(e.getRows(), e.getLine(), e.getMessage());
+    }
+
+    @ExceptionHandler(IOException.class)
+    public void handleDisconnectedClient(IOException e) throws IOException {
+        if (!DisconnectedClientHelper.isClientDisconnectedException(e)) {
+            throw e;
+        }
+    }
 
     @PostMapping(path = "/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -30,29 +71,153 @@ public class StatsController {
         service.recordHit(hit);
     }
 
+    @PostMapping(path = "/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void hits(@RequestBody List<EndpointHit> hits) {
+        service.recordHits(hits);
+    }
+
+    @PostMapping(path = "/latency")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void latency(@RequestBody List<EndpointHit> hits) {
+        service.recordLatencies(hits);
+    }
+
+    @PostMapping(path = "/hits/import", consumes = {"application/x-ndjson", "text/csv"})
+    public HitImportResult importHits(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                      InputStream body) throws IOException {
+        ImportFormat format = contentType.startsWith("text/csv") ? ImportFormat.CSV : ImportFormat.NDJSON;
+        return hitImporter.importHits(body, format);
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<List<ViewStats>> getStats(@RequestParam String start,
                                                     @RequestParam String end,
                                                     @RequestParam(required = false) List<String> uris,
-                                                    @RequestParam(defaultValue = "false") boolean unique) {
+                                                    @RequestParam(defaultValue = "false") boolean unique,
+                                                    @RequestParam(defaultValue = "exact") String uniqueMode,
+                                                    @RequestParam(defaultValue = "exact") String accuracy,
+                                                    @RequestParam(required = false) Integer limit) {
         try {
-            LocalDateTime startDT = LocalDateTime.parse(start, DTF);
-            LocalDateTime endDT = LocalDateTime.parse(end, DTF);
+            ViewStatsRequest request = toRequest(start, end, uris, unique, uniqueMode, accuracy, limit);
+            return ResponseEntity.ok(service.calculateViews(request));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.emptyList());
+        }
+    }
 
-            if (startDT.isAfter(endDT)) {
-                return ResponseEntity.badRequest().body(Collections.emptyList());
-            }
+    @PostMapping("/stats")
+    public List<ViewStats> postStats(@RequestBody ViewStatsRequest request) {
+        validate(request.getStart(), request.getEnd(), request.getLimit());
+        return service.calculateViews(request);
+    }
 
-            ViewStatsRequest request = ViewStatsRequest.builder()
-                    .start(startDT)
-                    .end(endDT)
-                    .uris((uris == null || uris.isEmpty()) ? Collections.emptyList() : uris)
-                    .unique(unique)
-                    .build();
+    @PostMapping("/stats/batch")
+    public List<ViewStats> getStatsBatch(@RequestBody ViewStatsBatchRequest request) {
+        if (request.getRanges().stream().anyMatch(range -> range.getStart().isAfter(request.getEnd()))) {
+            throw new IllegalArgumentException("Начало периода позже его окончания");
+        }
+        return service.calculateViews(request);
+    }
 
-            return ResponseEntity.ok(service.calculateViews(request));
-        } catch (DateTimeParseException e) {
+    @GetMapping("/stats/timeseries")
+    public ResponseEntity<List<ViewTimeSeries>> getTimeSeries(@RequestParam String start,
+                                                              @RequestParam String end,
+                                                              @RequestParam(required = false) List<String> uris,
+                                                              @RequestParam(defaultValue = "hour") String bucket) {
+        try {
+            ViewStatsRequest request = toRequest(start, end, uris, false, UniqueMode.APPROX.name(),
+                    Accuracy.EXACT.name(), null);
+            return ResponseEntity.ok(service.calculateTimeSeries(request, bucket));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.emptyList());
+        }
+    }
+
+    @GetMapping("/stats/latency")
+    public ResponseEntity<List<LatencyStats>> getLatency(@RequestParam String start,
+                                                         @RequestParam String end,
+                                                         @RequestParam(required = false) List<String> uris) {
+        try {
+            ViewStatsRequest request = toRequest(start, end, uris, false, UniqueMode.EXACT.name(),
+                    Accuracy.EXACT.name(), null);
+            return ResponseEntity.ok(service.calculateLatency(request));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Collections.emptyList());
         }
     }
+
+    @GetMapping(path = "/stats/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> live(@RequestParam(required = false) String app,
+                                           @RequestParam(required = false) String uriPrefix) {
+        return liveHitStream.subscribe(app, uriPrefix)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "5")
+                        .build());
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTop(@RequestParam(defaultValue = "1h") String window,
+                                  @RequestParam(defaultValue = "10") int limit) {
+        return service.findTop(window, limit);
+    }
+
+    @GetMapping(path = "/stats", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam String start,
+                                                             @RequestParam String end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(defaultValue = "false") boolean unique,
+                                                             @RequestParam(defaultValue = "exact") String uniqueMode,
+                                                             @RequestParam(defaultValue = "exact") String accuracy,
+                                                             @RequestParam(required = false) Integer limit) {
+        ViewStatsRequest request;
+        try {
+            request = toRequest(start, end, uris, unique, uniqueMode, accuracy, limit);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                service.streamViews(request, views -> {
+                    try {
+                        generator.writeObject(views);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok(body);
+    }
+
+    private ViewStatsRequest toRequest(String start, String end, List<String> uris, boolean unique,
+                                       String uniqueMode, String accuracy, Integer limit) {
+        LocalDateTime startDT = LocalDateTime.parse(start, DTF);
+        LocalDateTime endDT = LocalDateTime.parse(end, DTF);
+
+        validate(startDT, endDT, limit);
+
+        return ViewStatsRequest.builder()
+                .start(startDT)
+                .end(endDT)
+                .uris((uris == null || uris.isEmpty()) ? Collections.emptyList() : uris)
+                .unique(unique)
+                .uniqueMode(UniqueMode.valueOf(uniqueMode.toUpperCase()))
+                .accuracy(Accuracy.valueOf(accuracy.toUpperCase()))
+                .limit(limit)
+                .build();
+    }
+
+    private void validate(LocalDateTime start, LocalDateTime end, Integer limit) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Начало периода позже его окончания");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Параметр limit должен быть положительным");
+        }
+    }
 }
\ No newline at end of file
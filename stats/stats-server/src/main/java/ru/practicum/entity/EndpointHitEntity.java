@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.net.InetAddress;
 import java.time.LocalDateTime;
 
 @Entity
@@ -13,26 +14,31 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(of = {"id", "app", "uri", "ip", "timestamp"})
+@ToString(of = {"id", "appId", "uriId", "ip", "timestamp"})
 public class EndpointHitEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "endpoint_hit_seq")
+    @SequenceGenerator(name = "endpoint_hit_seq", sequenceName = "endpoint_hit_seq", allocationSize = 50)
     private Long id;
 
-    @Column(nullable = false)
-    private String app;
+    @Column(name = "app_id", nullable = false)
+    private Integer appId;
 
-    @Column(nullable = false)
-    private String uri;
+    @Column(name = "uri_id", nullable = false)
+    private Integer uriId;
 
     @Column(nullable = false)
-    private String ip;
+    private InetAddress ip;
 
     @Column(nullable = false)
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
 
+    @Builder.Default
+    @Column(name = "hit_count", nullable = false)
+    private Integer hitCount = 1;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
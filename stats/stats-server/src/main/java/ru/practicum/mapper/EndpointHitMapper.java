@@ -1,26 +1,60 @@
 package ru.practicum.mapper;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.practicum.EndpointHit;
 import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.service.DictionaryCache;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
 
 @Component
+@RequiredArgsConstructor
 public class EndpointHitMapper {
+    private static final String OCTET = "(25[0-5]|2[0-4]\\d|1?\\d?\\d)";
+    private static final Pattern IPV4 = Pattern.compile("(" + OCTET + "\\.){3}" + OCTET);
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F:.]*:[0-9a-fA-F:.]*");
+
+    private final DictionaryCache dictionary;
+
     public EndpointHitEntity toEntity(EndpointHit dto) {
         return EndpointHitEntity.builder()
-                .app(dto.getApp())
-                .uri(dto.getUri())
-                .ip(dto.getIp())
+                .appId(dictionary.appId(dto.getApp()))
+                .uriId(dictionary.uriId(dto.getUri()))
+                .ip(toInetAddress(dto.getIp()))
                 .timestamp(dto.getTimestamp())
                 .build();
     }
 
+    public void validate(EndpointHit hit) {
+        if (hit.getApp() == null || hit.getUri() == null || hit.getTimestamp() == null) {
+            throw new IllegalArgumentException("Хит должен содержать app, uri и timestamp");
+        }
+        toInetAddress(hit.getIp());
+        if (hit.getResponseTimeMs() != null && hit.getResponseTimeMs() < 0) {
+            throw new IllegalArgumentException("Время ответа не может быть отрицательным");
+        }
+    }
+
     public EndpointHit toDto(EndpointHitEntity entity) {
         return EndpointHit.builder()
-                .app(entity.getApp())
-                .uri(entity.getUri())
-                .ip(entity.getIp())
+                .app(dictionary.appName(entity.getAppId()))
+                .uri(dictionary.uriName(entity.getUriId()))
+                .ip(entity.getIp().getHostAddress())
                 .timestamp(entity.getTimestamp())
                 .build();
     }
+
+    public static InetAddress toInetAddress(String ip) {
+        if (ip == null || (!IPV4.matcher(ip).matches() && !IPV6.matcher(ip).matches())) {
+            throw new IllegalArgumentException("Некорректный IP-адрес: " + ip);
+        }
+        try {
+            return InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Некорректный IP-адрес: " + ip, e);
+        }
+    }
 }
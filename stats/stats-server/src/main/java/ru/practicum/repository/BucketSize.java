@@ -0,0 +1,30 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum BucketSize {
+    MINUTE(ChronoUnit.MINUTES, "endpoint_hit_minute"),
+    HOUR(ChronoUnit.HOURS, "endpoint_hit_hour");
+
+    private final ChronoUnit unit;
+    private final String table;
+
+    BucketSize(ChronoUnit unit, String table) {
+        this.unit = unit;
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+}
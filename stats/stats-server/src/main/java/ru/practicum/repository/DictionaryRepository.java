@@ -0,0 +1,72 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private static final String INSERT = """
+            INSERT INTO %s (name) VALUES (:name)
+            ON CONFLICT (name) DO NOTHING
+            """;
+
+    private static final String FIND_BY_NAMES = "SELECT id, name FROM %s WHERE name = ANY(:names)";
+
+    private static final String FIND_AFTER = "SELECT id, name FROM %s WHERE id > :id";
+
+    private static final String FIND_BY_ID = "SELECT name FROM %s WHERE id = :id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public int getOrCreate(Dimension dimension, String name) {
+        MapSqlParameterSource params = new MapSqlParameterSource("name", name);
+        jdbcTemplate.update(INSERT.formatted(dimension.getTable()), params);
+        return findByNames(dimension, List.of(name)).get(name);
+    }
+
+    public Map<String, Integer> findByNames(Dimension dimension, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("names", SqlArrays.strings(names));
+        jdbcTemplate.query(FIND_BY_NAMES.formatted(dimension.getTable()), params, rs -> {
+            ids.put(rs.getString("name"), rs.getInt("id"));
+        });
+        return ids;
+    }
+
+    public Map<String, Integer> findAfter(Dimension dimension, int id) {
+        Map<String, Integer> ids = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+        jdbcTemplate.query(FIND_AFTER.formatted(dimension.getTable()), params, rs -> {
+            ids.put(rs.getString("name"), rs.getInt("id"));
+        });
+        return ids;
+    }
+
+    public String findName(Dimension dimension, int id) {
+        return jdbcTemplate.queryForObject(FIND_BY_ID.formatted(dimension.getTable()),
+                new MapSqlParameterSource("id", id), String.class);
+    }
+
+    public enum Dimension {
+        APP("stats_app"),
+        URI("stats_uri");
+
+        private final String table;
+
+        Dimension(String table) {
+            this.table = table;
+        }
+
+        public String getTable() {
+            return table;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+
+@Repository
+@RequiredArgsConstructor
+public class HitImportRepository {
+    private static final String CREATE_STAGING = """
+            CREATE TEMP TABLE IF NOT EXISTS hit_import (
+                app_id INTEGER NOT NULL,
+                uri_id INTEGER NOT NULL,
+                ip INET NOT NULL,
+                timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
+            ) ON COMMIT DELETE ROWS
+            """;
+
+    private static final String COPY_STAGING = """
+            COPY hit_import (app_id, uri_id, ip, timestamp) FROM STDIN WITH (FORMAT csv)
+            """;
+
+    private static final String MERGE_HITS = """
+            INSERT INTO endpoint_hit (id, app_id, uri_id, ip, timestamp)
+            SELECT nextval('endpoint_hit_seq'), app_id, uri_id, ip, timestamp
+            FROM %s
+            """;
+
+    private static final String MERGE_ROLLUP = """
+            INSERT INTO %1$s (app_id, uri_id, bucket, hits)
+            SELECT app_id, uri_id, date_trunc('%2$s', timestamp), COUNT(*)
+            FROM %3$s
+            GROUP BY app_id, uri_id, date_trunc('%2$s', timestamp)
+            ORDER BY 2, 3, 1
+            ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits
+            """;
+
+    private static final String MERGE_VISITORS = """
+            WITH inserted AS (
+                INSERT INTO uri_visitor (uri_id, app_id, ip)
+                SELECT DISTINCT uri_id, app_id, ip
+                FROM %1$s
+                ORDER BY 1, 2, 3
+                ON CONFLICT DO NOTHING
+                RETURNING uri_id, app_id
+            ), counts AS (
+                SELECT uri_id, app_id, COUNT(*) AS visitors
+                FROM inserted
+                GROUP BY uri_id, app_id
+            ), ranges AS (
+                SELECT uri_id, app_id, MIN(timestamp) AS first_seen, MAX(timestamp) AS last_seen
+                FROM %1$s
+                GROUP BY uri_id, app_id
+            )
+            INSERT INTO uri_lifetime (uri_id, app_id, visitors, first_seen, last_seen)
+            SELECT r.uri_id, r.app_id, c.visitors, r.first_seen, r.last_seen
+            FROM ranges r
+            JOIN counts c ON c.uri_id = r.uri_id AND c.app_id = r.app_id
+            ORDER BY 1, 2
+            ON CONFLICT (uri_id, app_id) DO UPDATE SET
+                visitors = uri_lifetime.visitors + EXCLUDED.visitors,
+                first_seen = LEAST(uri_lifetime.first_seen, EXCLUDED.first_seen),
+                last_seen = GREATEST(uri_lifetime.last_seen, EXCLUDED.last_seen)
+            """;
+
+    private static final String MERGE_SAMPLE = """
+            INSERT INTO endpoint_hit_sample (app_id, uri_id, ip, timestamp)
+            SELECT app_id, uri_id, ip, timestamp
+            FROM %s
+            WHERE hit_sampled(ip)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long copyToStaging(String csv) {
+        jdbcTemplate.execute(CREATE_STAGING);
+        Long copied = jdbcTemplate.execute((Connection connection) -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, new StringReader(csv));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return copied == null ? 0 : copied;
+    }
+
+    public void mergeStaging() {
+        merge("hit_import");
+    }
+
+    public void merge(String source) {
+        jdbcTemplate.update(MERGE_HITS.formatted(source));
+        for (BucketSize size : BucketSize.values()) {
+            jdbcTemplate.update(MERGE_ROLLUP.formatted(size.getTable(), size.name().toLowerCase(), source));
+        }
+        jdbcTemplate.update(MERGE_VISITORS.formatted(source));
+        jdbcTemplate.update(MERGE_SAMPLE.formatted(source));
+    }
+}
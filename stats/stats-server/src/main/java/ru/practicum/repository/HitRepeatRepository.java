@@ -0,0 +1,34 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRepeatRepository {
+    private static final String ADD_REPEATS = """
+            UPDATE endpoint_hit SET hit_count = hit_count + :repeats
+            WHERE id = :id AND timestamp = :timestamp
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addRepeats(Map<KeptHit, Integer> repeats) {
+        SqlParameterSource[] batch = repeats.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("id", entry.getKey().id())
+                        .addValue("timestamp", entry.getKey().timestamp())
+                        .addValue("repeats", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(ADD_REPEATS, batch);
+    }
+
+    public record KeptHit(long id, LocalDateTime timestamp) {
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.entity.EndpointHitEntity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class HitSampleRepository {
+    public static final double RATE = 0.01;
+
+    private static final String INSERT = """
+            INSERT INTO endpoint_hit_sample (app_id, uri_id, ip, timestamp)
+            SELECT app_id, uri_id, ip, timestamp
+            FROM unnest(CAST(:appIds AS INTEGER[]), CAST(:uriIds AS INTEGER[]), CAST(:ips AS INET[]),
+                        CAST(:timestamps AS TIMESTAMP[])) AS h (app_id, uri_id, ip, timestamp)
+            WHERE hit_sampled(ip)
+            """;
+
+    private static final String COUNTS = """
+            SELECT app_id, uri_id, SUM(hits) AS hits, COUNT(*) AS visitors, SUM(hits * hits) AS squares
+            FROM (
+                SELECT app_id, uri_id, ip, COUNT(*) AS hits
+                FROM endpoint_hit_sample
+                WHERE timestamp >= :from AND timestamp < :to
+                %s
+                GROUP BY app_id, uri_id, ip
+            ) AS per_ip
+            GROUP BY app_id, uri_id
+            """;
+
+    private static final String DELETE_BEFORE = "DELETE FROM endpoint_hit_sample WHERE timestamp < :threshold";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void insert(List<EndpointHitEntity> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("appIds", SqlArrays.integers(hits.stream().map(EndpointHitEntity::getAppId).toList()))
+                .addValue("uriIds", SqlArrays.integers(hits.stream().map(EndpointHitEntity::getUriId).toList()))
+                .addValue("ips", SqlArrays.strings(hits.stream().map(hit -> hit.getIp().getHostAddress()).toList()))
+                .addValue("timestamps", SqlArrays.strings(hits.stream()
+                        .map(hit -> hit.getTimestamp().toString())
+                        .toList()));
+        jdbcTemplate.update(INSERT, params);
+    }
+
+    public void findCounts(LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                           Consumer<SampleCounts> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        jdbcTemplate.query(COUNTS.formatted(RollupRepository.uriFilter(params, uriIds)), params, rs -> {
+            consumer.accept(new SampleCounts(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")),
+                    rs.getLong("hits"), rs.getLong("visitors"), rs.getLong("squares")));
+        });
+    }
+
+    public int deleteBefore(LocalDateTime threshold) {
+        return jdbcTemplate.update(DELETE_BEFORE, new MapSqlParameterSource("threshold", threshold));
+    }
+}
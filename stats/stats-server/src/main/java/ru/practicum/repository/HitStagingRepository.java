@@ -0,0 +1,70 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.mapper.EndpointHitMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class HitStagingRepository {
+    private static final String CREATE = """
+            CREATE UNLOGGED TABLE IF NOT EXISTS %s (
+                app_id INTEGER NOT NULL,
+                uri_id INTEGER NOT NULL,
+                ip INET NOT NULL,
+                timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
+            )
+            """;
+
+    private static final String INSERT = """
+            INSERT INTO %s (app_id, uri_id, ip, timestamp)
+            VALUES (?, ?, CAST(? AS INET), ?)
+            """;
+
+    private static final String LOCK = "LOCK TABLE %s IN SHARE ROW EXCLUSIVE MODE";
+
+    private static final String ROWS = "SELECT app_id, uri_id, host(ip) AS ip, timestamp FROM %s";
+
+    private static final String DAYS = "SELECT DISTINCT date_trunc('day', timestamp) AS day FROM %s";
+
+    private static final String TRUNCATE = "TRUNCATE %s";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void create(String table) {
+        jdbcTemplate.execute(CREATE.formatted(table));
+    }
+
+    public void insert(String table, List<EndpointHitEntity> hits) {
+        jdbcTemplate.batchUpdate(INSERT.formatted(table), hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, hit.getAppId());
+            ps.setInt(2, hit.getUriId());
+            ps.setString(3, hit.getIp().getHostAddress());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    public List<LocalDateTime> findDays(String table) {
+        return jdbcTemplate.query(DAYS.formatted(table), (rs, rowNum) -> rs.getTimestamp("day").toLocalDateTime());
+    }
+
+    public List<EndpointHitEntity> lockAndRead(String table) {
+        jdbcTemplate.execute(LOCK.formatted(table));
+        return jdbcTemplate.query(ROWS.formatted(table), (rs, rowNum) -> EndpointHitEntity.builder()
+                .appId(rs.getInt("app_id"))
+                .uriId(rs.getInt("uri_id"))
+                .ip(EndpointHitMapper.toInetAddress(rs.getString("ip")))
+                .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                .build());
+    }
+
+    public void truncate(String table) {
+        jdbcTemplate.execute(TRUNCATE.formatted(table));
+    }
+}
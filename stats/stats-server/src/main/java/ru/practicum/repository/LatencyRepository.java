@@ -0,0 +1,90 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class LatencyRepository {
+    private static final String ENSURE = """
+            INSERT INTO %s (app_id, uri_id, bucket)
+            VALUES (:appId, :uriId, :bucket)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String LOCK = """
+            SELECT app_id, uri_id, bucket, histogram
+            FROM %s
+            WHERE (uri_id, bucket, app_id) IN (:keys)
+            ORDER BY uri_id, bucket, app_id
+            FOR UPDATE
+            """;
+
+    private static final String UPDATE = """
+            UPDATE %s SET histogram = :histogram
+            WHERE uri_id = :uriId AND bucket = :bucket AND app_id = :appId
+            """;
+
+    private static final String HISTOGRAMS = """
+            SELECT app_id, uri_id, histogram
+            FROM %s
+            WHERE bucket >= :from AND bucket < :to
+            AND histogram IS NOT NULL
+            %s
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<RollupKey, byte[]> lockHistograms(BucketSize size, Collection<RollupKey> keys) {
+        jdbcTemplate.batchUpdate(ENSURE.formatted(table(size)), keys.stream()
+                .map(this::keyParams)
+                .toArray(SqlParameterSource[]::new));
+        MapSqlParameterSource params = new MapSqlParameterSource("keys", keys.stream()
+                .map(key -> new Object[]{key.uriId(), key.bucket(), key.appId()})
+                .toList());
+        Map<RollupKey, byte[]> histograms = new HashMap<>();
+        jdbcTemplate.query(LOCK.formatted(table(size)), params, rs -> {
+            histograms.put(new RollupKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getBytes("histogram"));
+        });
+        return histograms;
+    }
+
+    public void updateHistograms(BucketSize size, Map<RollupKey, byte[]> histograms) {
+        SqlParameterSource[] batch = histograms.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey()).addValue("histogram", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPDATE.formatted(table(size)), batch);
+    }
+
+    public void findHistograms(BucketSize size, LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                               BiConsumer<ViewKey, byte[]> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        jdbcTemplate.query(HISTOGRAMS.formatted(table(size), RollupRepository.uriFilter(params, uriIds)), params, rs -> {
+            consumer.accept(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getBytes("histogram"));
+        });
+    }
+
+    private static String table(BucketSize size) {
+        return size == BucketSize.MINUTE ? "endpoint_latency" : "endpoint_latency_hour";
+    }
+
+    private MapSqlParameterSource keyParams(RollupKey key) {
+        return new MapSqlParameterSource()
+                .addValue("appId", key.appId())
+                .addValue("uriId", key.uriId())
+                .addValue("bucket", key.bucket());
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final String IS_PARTITIONED = """
+            SELECT EXISTS (
+                SELECT 1 FROM pg_class
+                WHERE oid = to_regclass('endpoint_hit') AND relkind = 'p'
+            )
+            """;
+
+    private static final String PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = to_regclass('endpoint_hit')
+            """;
+
+    private static final String CREATE = """
+            CREATE TABLE IF NOT EXISTS %s PARTITION OF endpoint_hit
+            FOR VALUES FROM ('%s') TO ('%s')
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED, Boolean.class));
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(PARTITIONS, String.class);
+    }
+
+    public void create(String name, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.execute(CREATE.formatted(name, from, to));
+    }
+
+    public void drop(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(int appId, int uriId, LocalDateTime bucket) implements Comparable<RollupKey> {
+    private static final Comparator<RollupKey> ORDER = Comparator.comparingInt(RollupKey::uriId)
+            .thenComparing(RollupKey::bucket)
+            .thenComparingInt(RollupKey::appId);
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+
+public record RollupPlan(Segment rawHead, Segment minuteHead, Segment hours, Segment minuteTail, Segment rawTail) {
+
+    public static RollupPlan of(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime minuteFrom = BucketSize.MINUTE.ceil(from);
+        LocalDateTime minuteTo = BucketSize.MINUTE.floor(to);
+        if (!minuteFrom.isBefore(minuteTo)) {
+            return new RollupPlan(new Segment(from, to), Segment.empty(to), Segment.empty(to),
+                    Segment.empty(to), Segment.empty(to));
+        }
+
+        LocalDateTime hourFrom = BucketSize.HOUR.ceil(minuteFrom);
+        LocalDateTime hourTo = BucketSize.HOUR.floor(minuteTo);
+        if (!hourFrom.isBefore(hourTo)) {
+            return new RollupPlan(new Segment(from, minuteFrom), new Segment(minuteFrom, minuteTo),
+                    Segment.empty(minuteTo), Segment.empty(minuteTo), new Segment(minuteTo, to));
+        }
+
+        return new RollupPlan(new Segment(from, minuteFrom), new Segment(minuteFrom, hourFrom),
+                new Segment(hourFrom, hourTo), new Segment(hourTo, minuteTo), new Segment(minuteTo, to));
+    }
+
+    public record Segment(LocalDateTime from, LocalDateTime to) {
+        static Segment empty(LocalDateTime at) {
+            return new Segment(at, at);
+        }
+
+        public boolean isEmpty() {
+            return !from.isBefore(to);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.mapper.EndpointHitMapper;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private static final String UPSERT = """
+            INSERT INTO %1$s (app_id, uri_id, bucket, hits)
+            VALUES (:appId, :uriId, :bucket, :hits)
+            ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits
+            """;
+
+    static final String VIEW_COUNTS = """
+            SELECT app_id, uri_id, SUM(hits) AS hits
+            FROM (
+                SELECT app_id, uri_id, SUM(hit_count) AS hits
+                FROM endpoint_hit
+                WHERE ((timestamp >= :rawHeadFrom AND timestamp < :rawHeadTo)
+                    OR (timestamp >= :rawTailFrom AND timestamp < :rawTailTo))
+                %1$s
+                GROUP BY app_id, uri_id
+                UNION ALL
+                SELECT app_id, uri_id, SUM(hits) AS hits
+                FROM endpoint_hit_minute
+                WHERE ((bucket >= :minuteHeadFrom AND bucket < :minuteHeadTo)
+                    OR (bucket >= :minuteTailFrom AND bucket < :minuteTailTo))
+                %1$s
+                GROUP BY app_id, uri_id
+                UNION ALL
+                SELECT app_id, uri_id, SUM(hits) AS hits
+                FROM endpoint_hit_hour
+                WHERE bucket >= :hoursFrom AND bucket < :hoursTo
+                %1$s
+                GROUP BY app_id, uri_id
+            ) AS segments
+            GROUP BY app_id, uri_id
+            """;
+
+    private static final String HOUR_COUNTS = """
+            SELECT bucket, app_id, uri_id, hits
+            FROM endpoint_hit_hour
+            WHERE bucket >= :from AND bucket < :to
+            %1$s
+            """;
+
+    private static final String PLAN_COUNTS = """
+            WITH r (uri_id, raw_head_from, raw_head_to, raw_tail_from, raw_tail_to, minute_head_from, minute_head_to,
+                    minute_tail_from, minute_tail_to, hours_from, hours_to) AS (VALUES :plans)
+            SELECT app_id, uri_id, SUM(hits) AS hits
+            FROM (
+                SELECT h.app_id, h.uri_id, SUM(h.hit_count) AS hits
+                FROM r
+                JOIN endpoint_hit h ON h.uri_id = r.uri_id
+                    AND ((h.timestamp >= r.raw_head_from AND h.timestamp < r.raw_head_to)
+                        OR (h.timestamp >= r.raw_tail_from AND h.timestamp < r.raw_tail_to))
+                GROUP BY h.app_id, h.uri_id
+                UNION ALL
+                SELECT m.app_id, m.uri_id, SUM(m.hits) AS hits
+                FROM r
+                JOIN endpoint_hit_minute m ON m.uri_id = r.uri_id
+                    AND ((m.bucket >= r.minute_head_from AND m.bucket < r.minute_head_to)
+                        OR (m.bucket >= r.minute_tail_from AND m.bucket < r.minute_tail_to))
+                GROUP BY m.app_id, m.uri_id
+                UNION ALL
+                SELECT o.app_id, o.uri_id, SUM(o.hits) AS hits
+                FROM r
+                JOIN endpoint_hit_hour o ON o.uri_id = r.uri_id
+                    AND o.bucket >= r.hours_from AND o.bucket < r.hours_to
+                GROUP BY o.app_id, o.uri_id
+            ) AS segments
+            GROUP BY app_id, uri_id
+            """;
+
+    private static final String VISITORS_SINCE = """
+            SELECT h.app_id, h.uri_id, COUNT(DISTINCT h.ip) AS hits
+            FROM (VALUES :ranges) AS r (uri_id, start)
+            JOIN endpoint_hit h ON h.uri_id = r.uri_id AND h.timestamp >= r.start AND h.timestamp < :to
+            GROUP BY h.app_id, h.uri_id
+            """;
+
+    private static final String SERIES = """
+            SELECT app_id, uri_id, bucket, hits, visitors
+            FROM %1$s
+            WHERE bucket >= :from AND bucket < :to
+            %2$s
+            """;
+
+    private static final String SKETCHES = """
+            SELECT app_id, uri_id, visitors
+            FROM %1$s
+            WHERE ((bucket >= :firstFrom AND bucket < :firstTo)
+                OR (bucket >= :secondFrom AND bucket < :secondTo))
+            AND visitors IS NOT NULL
+            %2$s
+            """;
+
+    private static final String EDGE_VISITORS = """
+            SELECT DISTINCT app_id, uri_id, ip
+            FROM endpoint_hit
+            WHERE ((timestamp >= :rawHeadFrom AND timestamp < :rawHeadTo)
+                OR (timestamp >= :rawTailFrom AND timestamp < :rawTailTo))
+            %1$s
+            """;
+
+    private static final String LOCK_SKETCHES = """
+            SELECT app_id, uri_id, bucket, visitors
+            FROM %1$s
+            WHERE (uri_id, bucket, app_id) IN (:keys)
+            ORDER BY uri_id, bucket, app_id
+            FOR UPDATE
+            """;
+
+    private static final String UPSERT_SKETCH = """
+            INSERT INTO %1$s (app_id, uri_id, bucket, hits, visitors)
+            VALUES (:appId, :uriId, :bucket, 0, :visitors)
+            ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET visitors = EXCLUDED.visitors
+            """;
+
+    private static final int PLAN_CHUNK = 1000;
+
+    private static final String DELETE_BEFORE = "DELETE FROM %1$s WHERE bucket < :threshold";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(BucketSize size, SortedMap<RollupKey, Long> counts) {
+        SqlParameterSource[] batch = counts.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey()).addValue("hits", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT.formatted(size.getTable()), batch);
+    }
+
+    public void countHits(RollupPlan plan, List<Integer> uriIds, Map<ViewKey, Long> counts) {
+        MapSqlParameterSource params = planParams(plan);
+        jdbcTemplate.query(VIEW_COUNTS.formatted(uriFilter(params, uriIds)), params, rs -> {
+            counts.merge(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getLong("hits"), Long::sum);
+        });
+    }
+
+    public Map<LocalDateTime, Map<ViewKey, Long>> countHitsByHour(LocalDateTime from, LocalDateTime to,
+                                                                 List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        Map<LocalDateTime, Map<ViewKey, Long>> counts = new HashMap<>();
+        jdbcTemplate.query(HOUR_COUNTS.formatted(uriFilter(params, uriIds)), params, rs -> {
+            counts.computeIfAbsent(rs.getTimestamp("bucket").toLocalDateTime(), bucket -> new HashMap<>())
+                    .put(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getLong("hits"));
+        });
+        return counts;
+    }
+
+    public void countHits(List<UriPlan> plans, Map<ViewKey, Long> counts) {
+        for (int from = 0; from < plans.size(); from += PLAN_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource("plans",
+                    plans.subList(from, Math.min(from + PLAN_CHUNK, plans.size())).stream()
+                            .map(RollupRepository::planRow)
+                            .toList());
+            jdbcTemplate.query(PLAN_COUNTS, params, rs -> {
+                counts.merge(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getLong("hits"), Long::sum);
+            });
+        }
+    }
+
+    public void countVisitorsSince(Map<Integer, LocalDateTime> starts, LocalDateTime to,
+                                   Map<ViewKey, Long> counts) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ranges", starts.entrySet().stream()
+                        .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+                        .toList())
+                .addValue("to", to);
+        jdbcTemplate.query(VISITORS_SINCE, params, rs -> {
+            counts.merge(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getLong("hits"), Long::sum);
+        });
+    }
+
+    public void findSeries(BucketSize size, LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                           SeriesConsumer consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        jdbcTemplate.query(SERIES.formatted(size.getTable(), uriFilter(params, uriIds)), params, rs -> {
+            consumer.accept(new RollupKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getLong("hits"), rs.getBytes("visitors"));
+        });
+    }
+
+    public void findSketches(BucketSize size, RollupPlan.Segment first, RollupPlan.Segment second,
+                             List<Integer> uriIds, BiConsumer<ViewKey, byte[]> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("firstFrom", first.from())
+                .addValue("firstTo", first.to())
+                .addValue("secondFrom", second.from())
+                .addValue("secondTo", second.to());
+        jdbcTemplate.query(SKETCHES.formatted(size.getTable(), uriFilter(params, uriIds)), params, rs -> {
+            consumer.accept(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getBytes("visitors"));
+        });
+    }
+
+    public void findEdgeVisitors(RollupPlan plan, List<Integer> uriIds, BiConsumer<ViewKey, byte[]> consumer) {
+        MapSqlParameterSource params = planParams(plan);
+        jdbcTemplate.query(EDGE_VISITORS.formatted(uriFilter(params, uriIds)), params, rs -> {
+            consumer.accept(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")),
+                    EndpointHitMapper.toInetAddress(rs.getString("ip")).getAddress());
+        });
+    }
+
+    public Map<RollupKey, byte[]> lockSketches(BucketSize size, Collection<RollupKey> keys) {
+        MapSqlParameterSource params = new MapSqlParameterSource("keys", keys.stream()
+                .map(key -> new Object[]{key.uriId(), key.bucket(), key.appId()})
+                .toList());
+        Map<RollupKey, byte[]> sketches = new HashMap<>();
+        jdbcTemplate.query(LOCK_SKETCHES.formatted(size.getTable()), params, rs -> {
+            sketches.put(new RollupKey(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime()), rs.getBytes("visitors"));
+        });
+        return sketches;
+    }
+
+    public void upsertSketches(BucketSize size, Map<RollupKey, byte[]> sketches) {
+        SqlParameterSource[] batch = sketches.entrySet().stream()
+                .map(entry -> keyParams(entry.getKey()).addValue("visitors", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_SKETCH.formatted(size.getTable()), batch);
+    }
+
+    public int deleteBefore(BucketSize size, LocalDateTime threshold) {
+        return jdbcTemplate.update(DELETE_BEFORE.formatted(size.getTable()),
+                new MapSqlParameterSource("threshold", threshold));
+    }
+
+    private MapSqlParameterSource keyParams(RollupKey key) {
+        return new MapSqlParameterSource()
+                .addValue("appId", key.appId())
+                .addValue("uriId", key.uriId())
+                .addValue("bucket", key.bucket());
+    }
+
+    private static Object[] planRow(UriPlan uriPlan) {
+        RollupPlan plan = uriPlan.plan();
+        return new Object[]{uriPlan.uriId(),
+                plan.rawHead().from(), plan.rawHead().to(), plan.rawTail().from(), plan.rawTail().to(),
+                plan.minuteHead().from(), plan.minuteHead().to(), plan.minuteTail().from(), plan.minuteTail().to(),
+                plan.hours().from(), plan.hours().to()};
+    }
+
+    static MapSqlParameterSource planParams(RollupPlan plan) {
+        return new MapSqlParameterSource()
+                .addValues(Map.of(
+                        "rawHeadFrom", plan.rawHead().from(), "rawHeadTo", plan.rawHead().to(),
+                        "rawTailFrom", plan.rawTail().from(), "rawTailTo", plan.rawTail().to(),
+                        "minuteHeadFrom", plan.minuteHead().from(), "minuteHeadTo", plan.minuteHead().to(),
+                        "minuteTailFrom", plan.minuteTail().from(), "minuteTailTo", plan.minuteTail().to(),
+                        "hoursFrom", plan.hours().from(), "hoursTo", plan.hours().to()));
+    }
+
+    static String uriFilter(MapSqlParameterSource params, List<Integer> uriIds) {
+        if (uriIds.isEmpty()) {
+            return "";
+        }
+        params.addValue("uriIds", SqlArrays.integers(uriIds));
+        return "AND uri_id = ANY(:uriIds)";
+    }
+
+    @FunctionalInterface
+    public interface SeriesConsumer {
+        void accept(RollupKey key, long hits, byte[] visitors);
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.repository;
+
+public record SampleCounts(ViewKey key, long hits, long visitors, long squares) {
+}
@@ -0,0 +1,19 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.sql.Types;
+import java.util.Collection;
+
+final class SqlArrays {
+    private SqlArrays() {
+    }
+
+    static SqlParameterValue integers(Collection<Integer> values) {
+        return new SqlParameterValue(Types.ARRAY, values.toArray(Integer[]::new));
+    }
+
+    static SqlParameterValue strings(Collection<String> values) {
+        return new SqlParameterValue(Types.ARRAY, values.toArray(String[]::new));
+    }
+}
@@ -13,28 +13,38 @@ import java.util.List;
 public interface StatsRepository extends JpaRepository<EndpointHitEntity, Long> {
 
     @Query(value = """
-            SELECT app, uri,
-            CASE WHEN :unique = true THEN COUNT(DISTINCT ip) ELSE COUNT(ip) END AS hits
-            FROM endpoint_hit
-            WHERE timestamp BETWEEN :start AND :end
-            GROUP BY app, uri
-            ORDER BY hits DESC
+            SELECT a.name AS app, u.name AS uri, parts.hits
+            FROM (
+                SELECT app_id, uri_id,
+                CASE WHEN :unique = true THEN COUNT(DISTINCT ip) ELSE SUM(hit_count) END AS hits
+                FROM endpoint_hit
+                WHERE timestamp BETWEEN :start AND :end
+                GROUP BY app_id, uri_id
+            ) AS parts
+            JOIN stats_app a ON a.id = parts.app_id
+            JOIN stats_uri u ON u.id = parts.uri_id
+            ORDER BY parts.hits DESC
             """, nativeQuery = true)
     List<Object[]> findViewStatsWithoutUris(@Param("start") LocalDateTime start,
                                             @Param("end") LocalDateTime end,
                                             @Param("unique") boolean unique);
 
     @Query(value = """
-            SELECT app, uri,
-            CASE WHEN :unique = true THEN COUNT(DISTINCT ip) ELSE COUNT(ip) END AS hits
-            FROM endpoint_hit
-            WHERE timestamp BETWEEN :start AND :end
-            AND uri IN (:uris)
-            GROUP BY app, uri
-            ORDER BY hits DESC
+            SELECT a.name AS app, u.name AS uri, parts.hits
+            FROM (
+                SELECT app_id, uri_id,
+                CASE WHEN :unique = true THEN COUNT(DISTINCT ip) ELSE SUM(hit_count) END AS hits
+                FROM endpoint_hit
+                WHERE timestamp BETWEEN :start AND :end
+                AND uri_id = ANY(CAST(:uriIds AS INTEGER[]))
+                GROUP BY app_id, uri_id
+            ) AS parts
+            JOIN stats_app a ON a.id = parts.app_id
+            JOIN stats_uri u ON u.id = parts.uri_id
+            ORDER BY parts.hits DESC
             """, nativeQuery = true)
     List<Object[]> findViewStatsWithUris(@Param("start") LocalDateTime start,
                                          @Param("end") LocalDateTime end,
-                                         @Param("uris") List<String> uris,
+                                         @Param("uriIds") Integer[] uriIds,
                                          @Param("unique") boolean unique);
 }
@@ -0,0 +1,16 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+
+public record UriLifetime(int appId, int uriId, long visitors, LocalDateTime firstSeen, LocalDateTime lastSeen) {
+
+    public UriLifetime merge(UriLifetime other) {
+        return new UriLifetime(appId, uriId, visitors + other.visitors,
+                firstSeen.isBefore(other.firstSeen) ? firstSeen : other.firstSeen,
+                lastSeen.isAfter(other.lastSeen) ? lastSeen : other.lastSeen);
+    }
+
+    public boolean isWithin(LocalDateTime from, LocalDateTime to) {
+        return !firstSeen.isBefore(from) && lastSeen.isBefore(to);
+    }
+}
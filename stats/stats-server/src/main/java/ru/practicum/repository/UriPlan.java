@@ -0,0 +1,4 @@
+package ru.practicum.repository;
+
+public record UriPlan(int uriId, RollupPlan plan) {
+}
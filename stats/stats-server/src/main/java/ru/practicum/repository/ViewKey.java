@@ -0,0 +1,13 @@
+package ru.practicum.repository;
+
+import java.util.Comparator;
+
+public record ViewKey(int appId, int uriId) implements Comparable<ViewKey> {
+    private static final Comparator<ViewKey> ORDER = Comparator.comparingInt(ViewKey::uriId)
+            .thenComparingInt(ViewKey::appId);
+
+    @Override
+    public int compareTo(ViewKey other) {
+        return ORDER.compare(this, other);
+    }
+}
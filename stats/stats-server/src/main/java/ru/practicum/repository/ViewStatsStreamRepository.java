@@ -0,0 +1,71 @@
+package ru.practicum.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ViewStats;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Repository
+public class ViewStatsStreamRepository {
+    private static final String NAMED_VIEWS = """
+            SELECT a.name AS app, u.name AS uri, parts.hits
+            FROM (
+                %1$s
+            ) AS parts
+            JOIN stats_app a ON a.id = parts.app_id
+            JOIN stats_uri u ON u.id = parts.uri_id
+            ORDER BY parts.hits DESC
+            LIMIT :limit
+            """;
+
+    private static final String UNIQUE_COUNTS = """
+            SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits
+            FROM endpoint_hit
+            WHERE timestamp >= :from AND timestamp < :to
+            %1$s
+            GROUP BY app_id, uri_id
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public ViewStatsStreamRepository(DataSource dataSource,
+                                     @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+    }
+
+    public void streamHits(RollupPlan plan, List<Integer> uriIds, Integer limit, Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = RollupRepository.planParams(plan);
+        String counts = RollupRepository.VIEW_COUNTS.formatted(RollupRepository.uriFilter(params, uriIds));
+        stream(counts, params, limit, consumer);
+    }
+
+    public void streamUniqueHits(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, Integer limit,
+                                 Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String counts = UNIQUE_COUNTS.formatted(RollupRepository.uriFilter(params, uriIds));
+        stream(counts, params, limit, consumer);
+    }
+
+    private void stream(String counts, MapSqlParameterSource params, Integer limit, Consumer<ViewStats> consumer) {
+        params.addValue("limit", limit, Types.INTEGER);
+        jdbcTemplate.query(NAMED_VIEWS.formatted(counts), params, rs -> {
+            consumer.accept(ViewStats.builder()
+                    .app(rs.getString("app"))
+                    .uri(rs.getString("uri"))
+                    .hits(rs.getLong("hits"))
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+@Repository
+@RequiredArgsConstructor
+public class VisitorIndexRepository {
+    private static final int INSERT_CHUNK = 1000;
+
+    private static final String INSERT_VISITORS = """
+            INSERT INTO uri_visitor (uri_id, app_id, ip)
+            SELECT v.uri_id, v.app_id, CAST(v.ip AS INET)
+            FROM (VALUES :visitors) AS v (uri_id, app_id, ip)
+            ON CONFLICT DO NOTHING
+            RETURNING uri_id, app_id
+            """;
+
+    private static final String UPSERT_LIFETIME = """
+            INSERT INTO uri_lifetime (uri_id, app_id, visitors, first_seen, last_seen)
+            VALUES (:uriId, :appId, :visitors, :firstSeen, :lastSeen)
+            ON CONFLICT (uri_id, app_id) DO UPDATE SET
+                visitors = uri_lifetime.visitors + EXCLUDED.visitors,
+                first_seen = LEAST(uri_lifetime.first_seen, EXCLUDED.first_seen),
+                last_seen = GREATEST(uri_lifetime.last_seen, EXCLUDED.last_seen)
+            """;
+
+    private static final String FIND_LIFETIMES = """
+            SELECT uri_id, app_id, visitors, first_seen, last_seen
+            FROM uri_lifetime
+            WHERE uri_id = ANY(:uriIds)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Map<ViewKey, Long> insertVisitors(List<Object[]> visitors) {
+        Map<ViewKey, Long> inserted = new HashMap<>();
+        for (int from = 0; from < visitors.size(); from += INSERT_CHUNK) {
+            List<Object[]> chunk = visitors.subList(from, Math.min(from + INSERT_CHUNK, visitors.size()));
+            jdbcTemplate.query(INSERT_VISITORS, new MapSqlParameterSource("visitors", chunk), rs -> {
+                inserted.merge(new ViewKey(rs.getInt("app_id"), rs.getInt("uri_id")), 1L, Long::sum);
+            });
+        }
+        return inserted;
+    }
+
+    public void upsertLifetimes(SortedMap<ViewKey, UriLifetime> lifetimes) {
+        SqlParameterSource[] batch = lifetimes.values().stream()
+                .map(lifetime -> new MapSqlParameterSource()
+                        .addValue("uriId", lifetime.uriId())
+                        .addValue("appId", lifetime.appId())
+                        .addValue("visitors", lifetime.visitors())
+                        .addValue("firstSeen", lifetime.firstSeen())
+                        .addValue("lastSeen", lifetime.lastSeen()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_LIFETIME, batch);
+    }
+
+    public Map<Integer, List<UriLifetime>> findLifetimes(Collection<Integer> uriIds) {
+        Map<Integer, List<UriLifetime>> lifetimes = new HashMap<>();
+        jdbcTemplate.query(FIND_LIFETIMES, new MapSqlParameterSource("uriIds", SqlArrays.integers(uriIds)), rs -> {
+            UriLifetime lifetime = new UriLifetime(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("visitors"),
+                    rs.getTimestamp("first_seen").toLocalDateTime(), rs.getTimestamp("last_seen").toLocalDateTime());
+            lifetimes.computeIfAbsent(lifetime.uriId(), id -> new ArrayList<>()).add(lifetime);
+        });
+        return lifetimes;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.repository.DictionaryRepository;
+import ru.practicum.repository.DictionaryRepository.Dimension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class DictionaryCache {
+    private final DictionaryRepository repository;
+    private final UriTrie uriTrie;
+    private final TransactionTemplate dictionaryTransaction;
+    private final Map<Dimension, Map<String, Integer>> ids = new EnumMap<>(Dimension.class);
+    private final Map<Dimension, Map<Integer, String>> names = new EnumMap<>(Dimension.class);
+
+    public DictionaryCache(DictionaryRepository repository, UriTrie uriTrie,
+                           PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.uriTrie = uriTrie;
+        this.dictionaryTransaction = new TransactionTemplate(transactionManager);
+        this.dictionaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (Dimension dimension : Dimension.values()) {
+            ids.put(dimension, new ConcurrentHashMap<>());
+            names.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    public int appId(String app) {
+        return idOf(Dimension.APP, app);
+    }
+
+    public int uriId(String uri) {
+        return idOf(Dimension.URI, uri);
+    }
+
+    public String appName(int id) {
+        return nameOf(Dimension.APP, id);
+    }
+
+    public String uriName(int id) {
+        return nameOf(Dimension.URI, id);
+    }
+
+    public List<Integer> findUriIds(Collection<String> uris) {
+        return new ArrayList<>(findUris(uris).values());
+    }
+
+    public Map<String, Integer> findUris(Collection<String> uris) {
+        Map<String, Integer> cached = ids.get(Dimension.URI);
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String uri : uris) {
+            if (UriTrie.isPattern(uri)) {
+                result.putAll(uriTrie.match(uri));
+                continue;
+            }
+            Integer id = cached.get(uri);
+            if (id != null) {
+                result.put(uri, id);
+            } else {
+                missing.add(uri);
+            }
+        }
+        if (!missing.isEmpty()) {
+            repository.findByNames(Dimension.URI, missing).forEach((name, id) -> {
+                remember(Dimension.URI, name, id);
+                result.put(name, id);
+            });
+        }
+        return result;
+    }
+
+    private int idOf(Dimension dimension, String name) {
+        Integer cached = ids.get(dimension).get(name);
+        if (cached != null) {
+            return cached;
+        }
+        Integer id = dictionaryTransaction.execute(status -> repository.getOrCreate(dimension, name));
+        Integer existing = ids.get(dimension).putIfAbsent(name, id);
+        if (existing != null) {
+            return existing;
+        }
+        names.get(dimension).put(id, name);
+        if (dimension == Dimension.URI) {
+            uriTrie.add(name, id);
+        }
+        return id;
+    }
+
+    private String nameOf(Dimension dimension, int id) {
+        String cached = names.get(dimension).get(id);
+        if (cached != null) {
+            return cached;
+        }
+        String name = repository.findName(dimension, id);
+        remember(dimension, name, id);
+        return name;
+    }
+
+    private void remember(Dimension dimension, String name, int id) {
+        ids.get(dimension).putIfAbsent(name, id);
+        names.get(dimension).putIfAbsent(id, name);
+        if (dimension == Dimension.URI) {
+            uriTrie.add(name, id);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.entity.EndpointHitEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class HitBuffer {
+    private final HitWriter writer;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final Duration flushInterval;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<EndpointHitEntity> queue;
+    private final Counter dropped;
+    private final Counter flushed;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public HitBuffer(HitWriter writer,
+                     MeterRegistry meterRegistry,
+                     @Value("${stats.ingest.mode:sync}") IngestMode mode,
+                     @Value("${stats.ingest.buffer.capacity:10000}") int capacity,
+                     @Value("${stats.ingest.buffer.max-batch-size:500}") int maxBatchSize,
+                     @Value("${stats.ingest.buffer.flush-interval:1s}") Duration flushInterval,
+                     @Value("${stats.ingest.buffer.overflow:block}") OverflowPolicy overflowPolicy) {
+        this.writer = writer;
+        this.enabled = mode == IngestMode.ASYNC;
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropped = Counter.builder("stats.ingest.buffer.dropped").register(meterRegistry);
+        this.flushed = Counter.builder("stats.ingest.buffer.flushed").register(meterRegistry);
+        Gauge.builder("stats.ingest.buffer.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("stats.ingest.buffer.remaining", queue, BlockingQueue::remainingCapacity)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean add(EndpointHitEntity hit) {
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            if (!queue.offer(hit)) {
+                dropped.increment();
+                return false;
+            }
+            return true;
+        }
+        try {
+            queue.put(hit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return false;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drainLoop, "stats-hit-writer");
+        writerThread.start();
+        log.info("Асинхронная запись хитов включена: размер пачки {}, интервал сброса {}", maxBatchSize, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.join(flushInterval.multipliedBy(10).toMillis());
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<EndpointHitEntity> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<EndpointHitEntity> nextBatch() throws InterruptedException {
+        List<EndpointHitEntity> batch = new ArrayList<>(maxBatchSize);
+        EndpointHitEntity first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            EndpointHitEntity next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<EndpointHitEntity> batch) {
+        try {
+            writer.write(batch);
+            flushed.increment(batch.size());
+        } catch (RuntimeException e) {
+            dropped.increment(batch.size());
+            log.error("Не удалось записать пачку из {} хитов", batch.size(), e);
+        }
+    }
+
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP
+    }
+}
@@ -0,0 +1,107 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.HitRepeatRepository.KeptHit;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class HitDeduplicator {
+    private final boolean enabled;
+    private final long windowSeconds;
+    private final int maxKeys;
+    private final ConcurrentHashMap<HitKey, KeptHit> kept = new ConcurrentHashMap<>();
+    private final Counter collapsed;
+
+    public HitDeduplicator(MeterRegistry meterRegistry,
+                           @Value("${stats.dedup.enabled:false}") boolean enabled,
+                           @Value("${stats.dedup.window:PT10S}") Duration window,
+                           @Value("${stats.dedup.max-keys:100000}") int maxKeys) {
+        if (window.toSeconds() < 1 || 60 % window.toSeconds() != 0) {
+            throw new IllegalArgumentException("Окно дедупликации должно делить минуту без остатка: " + window);
+        }
+        this.enabled = enabled;
+        this.windowSeconds = window.toSeconds();
+        this.maxKeys = maxKeys;
+        this.collapsed = Counter.builder("stats.dedup.collapsed").register(meterRegistry);
+        Gauge.builder("stats.dedup.keys", kept, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Batch split(List<EndpointHitEntity> hits) {
+        Map<HitKey, EndpointHitEntity> rows = new LinkedHashMap<>();
+        Map<KeptHit, Integer> repeats = new HashMap<>();
+        for (EndpointHitEntity hit : hits) {
+            HitKey key = key(hit);
+            KeptHit existing = kept.get(key);
+            if (existing != null) {
+                repeats.merge(existing, 1, Integer::sum);
+                continue;
+            }
+            EndpointHitEntity row = rows.get(key);
+            if (row == null) {
+                rows.put(key, copy(hit));
+            } else {
+                row.setHitCount(row.getHitCount() + 1);
+            }
+        }
+        collapsed.increment(hits.size() - rows.size());
+        return new Batch(new ArrayList<>(rows.values()), repeats);
+    }
+
+    public void remember(List<EndpointHitEntity> rows) {
+        for (EndpointHitEntity row : rows) {
+            if (kept.size() >= maxKeys) {
+                return;
+            }
+            kept.putIfAbsent(key(row), new KeptHit(row.getId(), row.getTimestamp()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.dedup.window:PT10S}")
+    public void evictExpired() {
+        long current = bucket(LocalDateTime.now());
+        kept.keySet().removeIf(key -> key.bucket() < current - 1);
+    }
+
+    private HitKey key(EndpointHitEntity hit) {
+        return new HitKey(hit.getAppId(), hit.getUriId(), hit.getIp(), bucket(hit.getTimestamp()));
+    }
+
+    private long bucket(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) / windowSeconds;
+    }
+
+    private EndpointHitEntity copy(EndpointHitEntity hit) {
+        return EndpointHitEntity.builder()
+                .appId(hit.getAppId())
+                .uriId(hit.getUriId())
+                .ip(hit.getIp())
+                .timestamp(hit.getTimestamp())
+                .build();
+    }
+
+    public record Batch(List<EndpointHitEntity> rows, Map<KeptHit, Integer> repeats) {
+    }
+
+    private record HitKey(int appId, int uriId, InetAddress ip, long bucket) {
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.service;
+
+public record HitImportError(long rows, long line, String error) {
+}
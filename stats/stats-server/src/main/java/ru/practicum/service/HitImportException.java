@@ -0,0 +1,15 @@
+package ru.practicum.service;
+
+import lombok.Getter;
+
+@Getter
+public class HitImportException extends IllegalArgumentException {
+    private final long rows;
+    private final long line;
+
+    public HitImportException(long rows, long line, IllegalArgumentException cause) {
+        super(cause.getMessage(), cause);
+        this.rows = rows;
+        this.line = line;
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.service;
+
+public record HitImportResult(long rows, int chunks, long millis) {
+}
@@ -0,0 +1,159 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.EndpointHit;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.mapper.EndpointHitMapper;
+import ru.practicum.repository.HitImportRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class HitImporter {
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String CSV_HEADER = "app,";
+
+    private final HitImportRepository importRepository;
+    private final EndpointHitMapper mapper;
+    private final PartitionManager partitionManager;
+    private final VisitorSketches visitorSketches;
+    private final ViewsCache viewsCache;
+    private final VisitorIndex visitorIndex;
+    private final HotWindow hotWindow;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter imported;
+    private final int chunkSize;
+
+    public HitImporter(HitImportRepository importRepository,
+                       EndpointHitMapper mapper,
+                       PartitionManager partitionManager,
+                       VisitorSketches visitorSketches,
+                       ViewsCache viewsCache,
+                       VisitorIndex visitorIndex,
+                       HotWindow hotWindow,
+                       ObjectMapper objectMapper,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${stats.import.chunk-size:50000}") int chunkSize) {
+        this.importRepository = importRepository;
+        this.mapper = mapper;
+        this.partitionManager = partitionManager;
+        this.visitorSketches = visitorSketches;
+        this.viewsCache = viewsCache;
+        this.visitorIndex = visitorIndex;
+        this.hotWindow = hotWindow;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.imported = Counter.builder("stats.import.rows").register(meterRegistry);
+        this.chunkSize = chunkSize;
+    }
+
+    public HitImportResult importHits(InputStream body, ImportFormat format) throws IOException {
+        long started = System.nanoTime();
+        long rows = 0;
+        int chunks = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            List<EndpointHitEntity> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (format == ImportFormat.CSV && lineNumber == 1 && line.startsWith(CSV_HEADER))) {
+                    continue;
+                }
+                try {
+                    chunk.add(parse(line, format, lineNumber));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Импорт хитов прерван на строке {}: загружено {} строк", lineNumber, rows);
+                    throw new HitImportException(rows, lineNumber, e);
+                }
+                if (chunk.size() >= chunkSize) {
+                    rows += load(chunk);
+                    chunks++;
+                    log.info("Импорт хитов: загружено {} строк в {} пачках", rows, chunks);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rows += load(chunk);
+                chunks++;
+            }
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        log.info("Импорт хитов завершён: {} строк, {} пачек, {} мс", rows, chunks, millis);
+        return new HitImportResult(rows, chunks, millis);
+    }
+
+    private EndpointHitEntity parse(String line, ImportFormat format, long lineNumber) {
+        try {
+            EndpointHit hit = format == ImportFormat.CSV ? parseCsv(line) : objectMapper.readValue(line, EndpointHit.class);
+            mapper.validate(hit);
+            return mapper.toEntity(hit);
+        } catch (JsonProcessingException | DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Строка " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private EndpointHit parseCsv(String line) {
+        int appEnd = line.indexOf(',');
+        int timestampStart = line.lastIndexOf(',');
+        int ipStart = line.lastIndexOf(',', timestampStart - 1);
+        if (appEnd < 0 || ipStart <= appEnd) {
+            throw new IllegalArgumentException("Ожидается app,uri,ip,timestamp");
+        }
+        return EndpointHit.builder()
+                .app(line.substring(0, appEnd))
+                .uri(line.substring(appEnd + 1, ipStart))
+                .ip(line.substring(ipStart + 1, timestampStart))
+                .timestamp(LocalDateTime.parse(line.substring(timestampStart + 1), DTF))
+                .build();
+    }
+
+    private long load(List<EndpointHitEntity> chunk) {
+        List<LocalDateTime> timestamps = chunk.stream()
+                .map(EndpointHitEntity::getTimestamp)
+                .toList();
+        Set<Integer> uriIds = chunk.stream()
+                .map(EndpointHitEntity::getUriId)
+                .collect(Collectors.toSet());
+        String csv = chunk.stream()
+                .map(hit -> hit.getAppId() + "," + hit.getUriId() + "," + hit.getIp().getHostAddress() + ","
+                        + hit.getTimestamp().format(DTF))
+                .collect(Collectors.joining("\n", "", "\n"));
+
+        partitionManager.ensurePartitions(timestamps);
+        Long copied = transactionTemplate.execute(status -> {
+            long count = importRepository.copyToStaging(csv);
+            importRepository.mergeStaging();
+            return count;
+        });
+
+        visitorSketches.record(chunk);
+        viewsCache.invalidate(timestamps);
+        visitorIndex.invalidate(uriIds);
+        hotWindow.record(chunk);
+        imported.increment(chunk.size());
+        return copied == null ? 0 : copied;
+    }
+}
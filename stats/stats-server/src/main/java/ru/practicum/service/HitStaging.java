@@ -0,0 +1,155 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.HitImportRepository;
+import ru.practicum.repository.HitStagingRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class HitStaging {
+    private static final String PREFIX = "endpoint_hit_staging_";
+
+    private final HitStagingRepository stagingRepository;
+    private final HitImportRepository importRepository;
+    private final PartitionManager partitionManager;
+    private final VisitorSketches visitorSketches;
+    private final ViewsCache viewsCache;
+    private final VisitorIndex visitorIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration mergeInterval;
+    private final String[] tables;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter merged;
+
+    public HitStaging(HitStagingRepository stagingRepository,
+                      HitImportRepository importRepository,
+                      PartitionManager partitionManager,
+                      VisitorSketches visitorSketches,
+                      ViewsCache viewsCache,
+                      VisitorIndex visitorIndex,
+                      TransactionTemplate transactionTemplate,
+                      MeterRegistry meterRegistry,
+                      @Value("${stats.ingest.mode:sync}") IngestMode mode,
+                      @Value("${stats.ingest.staging.tables:4}") int tables,
+                      @Value("${stats.ingest.staging.merge-interval:PT2S}") Duration mergeInterval) {
+        if (tables < 2) {
+            throw new IllegalArgumentException("Для поочерёдной записи нужно не меньше двух staging-таблиц");
+        }
+        this.stagingRepository = stagingRepository;
+        this.importRepository = importRepository;
+        this.partitionManager = partitionManager;
+        this.visitorSketches = visitorSketches;
+        this.viewsCache = viewsCache;
+        this.visitorIndex = visitorIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = mode == IngestMode.STAGED;
+        this.mergeInterval = mergeInterval;
+        this.tables = new String[tables];
+        for (int i = 0; i < tables; i++) {
+            this.tables[i] = PREFIX + i;
+        }
+        this.merged = Counter.builder("stats.ingest.staging.merged").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        for (String table : tables) {
+            stagingRepository.create(table);
+        }
+        log.warn("Хиты пишутся в UNLOGGED-таблицы ({} шт.), при сбое БД теряются данные за последние {}",
+                tables.length, mergeInterval);
+    }
+
+    public void write(List<EndpointHitEntity> hits) {
+        stagingRepository.insert(tables[active.get()], hits);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.ingest.staging.merge-interval:PT2S}")
+    public void merge() {
+        if (!enabled) {
+            return;
+        }
+        int current = active.updateAndGet(index -> (index + 1) % tables.length);
+        for (int i = 0; i < tables.length; i++) {
+            if (i != current) {
+                mergeTable(tables[i]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        if (!enabled) {
+            return;
+        }
+        for (String table : tables) {
+            mergeTable(table);
+        }
+    }
+
+    private void mergeTable(String table) {
+        try {
+            List<LocalDateTime> days = stagingRepository.findDays(table);
+            if (days.isEmpty()) {
+                return;
+            }
+            partitionManager.ensurePartitions(days);
+            Set<LocalDateTime> covered = new HashSet<>(days);
+            List<EndpointHitEntity> hits = transactionTemplate.execute(status -> {
+                List<EndpointHitEntity> rows = stagingRepository.lockAndRead(table);
+                if (rows.isEmpty()) {
+                    return rows;
+                }
+                if (!rows.stream().allMatch(hit -> covered.contains(hit.getTimestamp().truncatedTo(ChronoUnit.DAYS)))) {
+                    log.debug("В {} появились хиты за новые сутки, перенос отложен", table);
+                    return List.<EndpointHitEntity>of();
+                }
+                importRepository.merge(table);
+                stagingRepository.truncate(table);
+                return rows;
+            });
+            if (hits == null || hits.isEmpty()) {
+                return;
+            }
+            List<LocalDateTime> timestamps = hits.stream()
+                    .map(EndpointHitEntity::getTimestamp)
+                    .toList();
+            Set<Integer> uriIds = hits.stream()
+                    .map(EndpointHitEntity::getUriId)
+                    .collect(Collectors.toSet());
+            visitorSketches.record(hits);
+            viewsCache.invalidate(timestamps);
+            visitorIndex.invalidate(uriIds);
+            merged.increment(hits.size());
+            log.debug("Перенесено {} хитов из {}", hits.size(), table);
+        } catch (RuntimeException e) {
+            log.error("Не удалось перенести хиты из {}", table, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.HitRepeatRepository;
+import ru.practicum.repository.HitSampleRepository;
+import ru.practicum.repository.RollupKey;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final StatsRepository repository;
+    private final RollupRepository rollupRepository;
+    private final HitSampleRepository sampleRepository;
+    private final HitRepeatRepository repeatRepository;
+    private final HitDeduplicator deduplicator;
+    private final VisitorSketches visitorSketches;
+    private final PartitionManager partitionManager;
+    private final ViewsCache viewsCache;
+    private final VisitorIndex visitorIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    public void write(List<EndpointHitEntity> hits) {
+        List<LocalDateTime> timestamps = hits.stream()
+                .map(EndpointHitEntity::getTimestamp)
+                .toList();
+        partitionManager.ensurePartitions(timestamps);
+        transactionTemplate.executeWithoutResult(status -> writeRows(hits, timestamps));
+    }
+
+    private void writeRows(List<EndpointHitEntity> hits, List<LocalDateTime> timestamps) {
+        List<EndpointHitEntity> rows = hits;
+        if (deduplicator.isEnabled()) {
+            HitDeduplicator.Batch batch = deduplicator.split(hits);
+            rows = batch.rows();
+            if (!batch.repeats().isEmpty()) {
+                repeatRepository.addRepeats(batch.repeats());
+            }
+        }
+        List<EndpointHitEntity> saved = repository.saveAll(rows);
+        for (BucketSize size : BucketSize.values()) {
+            rollupRepository.increment(size, countByBucket(hits, size));
+        }
+        sampleRepository.insert(hits);
+        visitorIndex.record(hits);
+        Set<Integer> uriIds = hits.stream()
+                .map(EndpointHitEntity::getUriId)
+                .collect(Collectors.toSet());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (deduplicator.isEnabled()) {
+                    deduplicator.remember(saved);
+                }
+                visitorSketches.record(hits);
+                viewsCache.invalidate(timestamps);
+                visitorIndex.invalidate(uriIds);
+            }
+        });
+    }
+
+    private SortedMap<RollupKey, Long> countByBucket(List<EndpointHitEntity> hits, BucketSize size) {
+        SortedMap<RollupKey, Long> counts = new TreeMap<>();
+        for (EndpointHitEntity hit : hits) {
+            counts.merge(new RollupKey(hit.getAppId(), hit.getUriId(), size.floor(hit.getTimestamp())), 1L, Long::sum);
+        }
+        return counts;
+    }
+}
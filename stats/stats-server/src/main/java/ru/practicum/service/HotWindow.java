@@ -0,0 +1,201 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.ViewKey;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+@Component
+public class HotWindow {
+    private final boolean enabled;
+    private final int minutes;
+    private final Stripe[] stripes;
+    private final LocalDateTime startedAt;
+
+    public HotWindow(@Value("${stats.hot-window.enabled:true}") boolean enabled,
+                     @Value("${stats.hot-window.minutes:10}") int minutes,
+                     @Value("${stats.hot-window.stripes:64}") int stripes) {
+        this.enabled = enabled;
+        this.minutes = minutes;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.startedAt = BucketSize.MINUTE.ceil(LocalDateTime.now());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LocalDateTime coveredFrom() {
+        LocalDateTime oldest = BucketSize.MINUTE.floor(LocalDateTime.now()).minusMinutes(minutes - 1);
+        return oldest.isAfter(startedAt) ? oldest : startedAt;
+    }
+
+    public LocalDateTime coveredTo() {
+        return BucketSize.MINUTE.floor(LocalDateTime.now()).plusMinutes(1);
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        if (!enabled) {
+            return;
+        }
+        long oldest = epochMinute(coveredFrom());
+        long newest = epochMinute(coveredTo());
+        for (EndpointHitEntity hit : hits) {
+            long minute = epochMinute(hit.getTimestamp());
+            if (minute < oldest || minute > newest) {
+                continue;
+            }
+            Stripe stripe = stripe(hit.getUriId());
+            stripe.lock.lock();
+            try {
+                stripe.entries
+                        .computeIfAbsent(hit.getUriId(), id -> new HashMap<>())
+                        .computeIfAbsent(hit.getAppId(), id -> new Slots(minutes + 1))
+                        .add(minute, hit.getIp());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    public Map<ViewKey, Long> countHits(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds) {
+        Map<ViewKey, Long> counts = new HashMap<>();
+        scan(from, to, uriIds, (key, slots) -> {
+            long total = slots.hits(epochMinute(from), epochMinute(to));
+            if (total > 0) {
+                counts.merge(key, total, Long::sum);
+            }
+        });
+        return counts;
+    }
+
+    public Map<ViewKey, Set<InetAddress>> collectVisitors(LocalDateTime from, LocalDateTime to,
+                                                          Collection<Integer> uriIds) {
+        Map<ViewKey, Set<InetAddress>> visitors = new HashMap<>();
+        scan(from, to, uriIds, (key, slots) -> slots.visitors(epochMinute(from), epochMinute(to),
+                visitors.computeIfAbsent(key, k -> new HashSet<>())));
+        visitors.values().removeIf(Set::isEmpty);
+        return visitors;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long oldest = epochMinute(coveredFrom());
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.entries.values().forEach(apps -> apps.values().removeIf(slots -> slots.isExpired(oldest)));
+                stripe.entries.values().removeIf(Map::isEmpty);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private void scan(LocalDateTime from, LocalDateTime to, Collection<Integer> uriIds,
+                      BiConsumer<ViewKey, Slots> consumer) {
+        if (uriIds.isEmpty()) {
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    stripe.entries.forEach((uriId, apps) -> apps.forEach((appId, slots) ->
+                            consumer.accept(new ViewKey(appId, uriId), slots)));
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return;
+        }
+        for (Integer uriId : uriIds) {
+            Stripe stripe = stripe(uriId);
+            stripe.lock.lock();
+            try {
+                stripe.entries.getOrDefault(uriId, Map.of()).forEach((appId, slots) ->
+                        consumer.accept(new ViewKey(appId, uriId), slots));
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private Stripe stripe(int uriId) {
+        return stripes[Math.floorMod(uriId, stripes.length)];
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Integer, Map<Integer, Slots>> entries = new HashMap<>();
+    }
+
+    private static class Slots {
+        private final long[] minutes;
+        private final long[] hits;
+        private final Set<InetAddress>[] visitors;
+
+        @SuppressWarnings("unchecked")
+        Slots(int size) {
+            this.minutes = new long[size];
+            this.hits = new long[size];
+            this.visitors = new Set[size];
+        }
+
+        void add(long minute, InetAddress ip) {
+            int slot = (int) Math.floorMod(minute, (long) minutes.length);
+            if (minutes[slot] != minute || visitors[slot] == null) {
+                minutes[slot] = minute;
+                hits[slot] = 0;
+                visitors[slot] = new HashSet<>();
+            }
+            hits[slot]++;
+            visitors[slot].add(ip);
+        }
+
+        long hits(long from, long to) {
+            long total = 0;
+            for (int i = 0; i < minutes.length; i++) {
+                if (visitors[i] != null && minutes[i] >= from && minutes[i] < to) {
+                    total += hits[i];
+                }
+            }
+            return total;
+        }
+
+        void visitors(long from, long to, Set<InetAddress> target) {
+            for (int i = 0; i < minutes.length; i++) {
+                if (visitors[i] != null && minutes[i] >= from && minutes[i] < to) {
+                    target.addAll(visitors[i]);
+                }
+            }
+        }
+
+        boolean isExpired(long oldest) {
+            for (int i = 0; i < minutes.length; i++) {
+                if (visitors[i] != null && minutes[i] >= oldest) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
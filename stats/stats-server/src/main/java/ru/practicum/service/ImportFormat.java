@@ -0,0 +1,6 @@
+package ru.practicum.service;
+
+public enum ImportFormat {
+    NDJSON,
+    CSV
+}
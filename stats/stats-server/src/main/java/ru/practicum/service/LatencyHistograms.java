@@ -0,0 +1,179 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.LatencyStats;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.LatencyRepository;
+import ru.practicum.repository.RollupKey;
+import ru.practicum.repository.ViewKey;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.zip.DataFormatException;
+
+@Slf4j
+@Component
+public class LatencyHistograms {
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final int LOCK_CHUNK = 500;
+
+    private final LatencyRepository latencyRepository;
+    private final DictionaryCache dictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxValueMs;
+    private final ConcurrentHashMap<RollupKey, IntCountsHistogram> pending = new ConcurrentHashMap<>();
+
+    public LatencyHistograms(LatencyRepository latencyRepository,
+                             DictionaryCache dictionary,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${stats.latency.max-value-ms:3600000}") long maxValueMs) {
+        this.latencyRepository = latencyRepository;
+        this.dictionary = dictionary;
+        this.transactionTemplate = transactionTemplate;
+        this.maxValueMs = maxValueMs;
+    }
+
+    public void record(EndpointHitEntity hit, long responseTimeMs) {
+        RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), BucketSize.MINUTE.floor(hit.getTimestamp()));
+        long value = Math.min(responseTimeMs, maxValueMs);
+        pending.compute(key, (k, histogram) -> {
+            IntCountsHistogram result = histogram == null ? newHistogram() : histogram;
+            result.recordValue(value);
+            return result;
+        });
+    }
+
+    public List<LatencyStats> calculate(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        LocalDateTime minuteFrom = BucketSize.MINUTE.floor(from);
+        LocalDateTime minuteTo = BucketSize.MINUTE.ceil(to);
+        LocalDateTime hourFrom = BucketSize.HOUR.ceil(minuteFrom);
+        LocalDateTime hourTo = BucketSize.HOUR.floor(minuteTo);
+        Map<ViewKey, Histogram> merged = new HashMap<>();
+        BiConsumer<ViewKey, byte[]> collector =
+                (key, bytes) -> merged.computeIfAbsent(key, k -> newTotal()).add(decode(bytes));
+        if (hourFrom.isBefore(hourTo)) {
+            latencyRepository.findHistograms(BucketSize.MINUTE, minuteFrom, hourFrom, uriIds, collector);
+            latencyRepository.findHistograms(BucketSize.HOUR, hourFrom, hourTo, uriIds, collector);
+            latencyRepository.findHistograms(BucketSize.MINUTE, hourTo, minuteTo, uriIds, collector);
+        } else {
+            latencyRepository.findHistograms(BucketSize.MINUTE, minuteFrom, minuteTo, uriIds, collector);
+        }
+        Set<Integer> uriSet = Set.copyOf(uriIds);
+        pending.forEach((key, histogram) -> {
+            if (key.bucket().isBefore(minuteFrom) || !key.bucket().isBefore(minuteTo)) {
+                return;
+            }
+            if (!uriSet.isEmpty() && !uriSet.contains(key.uriId())) {
+                return;
+            }
+            pending.computeIfPresent(key, (k, current) -> {
+                merged.computeIfAbsent(new ViewKey(k.appId(), k.uriId()), v -> newTotal()).add(current);
+                return current;
+            });
+        });
+        return merged.entrySet().stream()
+                .map(entry -> LatencyStats.builder()
+                        .app(dictionary.appName(entry.getKey().appId()))
+                        .uri(dictionary.uriName(entry.getKey().uriId()))
+                        .count(entry.getValue().getTotalCount())
+                        .p50(entry.getValue().getValueAtPercentile(50))
+                        .p95(entry.getValue().getValueAtPercentile(95))
+                        .p99(entry.getValue().getValueAtPercentile(99))
+                        .max(entry.getValue().getMaxValue())
+                        .build())
+                .sorted(Comparator.comparing(LatencyStats::getCount).reversed())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.latency.flush-interval:PT5S}")
+    public void flush() {
+        TreeMap<RollupKey, IntCountsHistogram> batch = new TreeMap<>();
+        for (RollupKey key : pending.keySet()) {
+            IntCountsHistogram delta = pending.remove(key);
+            if (delta != null) {
+                batch.put(key, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> store(batch));
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить {} гистограмм времени ответа", batch.size(), e);
+            batch.forEach((key, delta) -> pending.merge(key, delta, (current, failed) -> {
+                current.add(failed);
+                return current;
+            }));
+        }
+    }
+
+    private void store(TreeMap<RollupKey, IntCountsHistogram> batch) {
+        store(BucketSize.MINUTE, batch);
+        TreeMap<RollupKey, IntCountsHistogram> hours = new TreeMap<>();
+        batch.forEach((key, delta) -> hours.computeIfAbsent(
+                new RollupKey(key.appId(), key.uriId(), BucketSize.HOUR.floor(key.bucket())),
+                k -> newHistogram()).add(delta));
+        store(BucketSize.HOUR, hours);
+    }
+
+    private void store(BucketSize size, TreeMap<RollupKey, IntCountsHistogram> batch) {
+        List<RollupKey> keys = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < keys.size(); from += LOCK_CHUNK) {
+            List<RollupKey> chunk = keys.subList(from, Math.min(from + LOCK_CHUNK, keys.size()));
+            Map<RollupKey, byte[]> stored = latencyRepository.lockHistograms(size, chunk);
+            Map<RollupKey, byte[]> updated = new HashMap<>();
+            for (RollupKey key : chunk) {
+                IntCountsHistogram histogram = newHistogram();
+                histogram.add(batch.get(key));
+                byte[] current = stored.get(key);
+                if (current != null) {
+                    histogram.add(decode(current));
+                }
+                updated.put(key, encode(histogram));
+            }
+            latencyRepository.updateHistograms(size, updated);
+        }
+    }
+
+    private IntCountsHistogram newHistogram() {
+        return new IntCountsHistogram(maxValueMs, SIGNIFICANT_DIGITS);
+    }
+
+    private Histogram newTotal() {
+        return new Histogram(maxValueMs, SIGNIFICANT_DIGITS);
+    }
+
+    private byte[] encode(IntCountsHistogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        byte[] bytes = new byte[length];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private Histogram decode(byte[] bytes) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Повреждённая гистограмма времени ответа", e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.ViewStats;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.ViewKey;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+public class LiveHitStream {
+    private final DictionaryCache dictionary;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    private final long heartbeatNanos;
+    private final ConcurrentHashMap<ViewKey, Long> deltas = new ConcurrentHashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger slots = new AtomicInteger();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter dropped;
+
+    public LiveHitStream(DictionaryCache dictionary,
+                         MeterRegistry meterRegistry,
+                         @Value("${stats.live.max-subscribers:100}") int maxSubscribers,
+                         @Value("${stats.live.timeout:PT30M}") Duration timeout,
+                         @Value("${stats.live.heartbeat:PT15S}") Duration heartbeat) {
+        this.dictionary = dictionary;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.dropped = Counter.builder("stats.live.dropped").register(meterRegistry);
+        Gauge.builder("stats.live.subscribers", subscribers, List::size).register(meterRegistry);
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Map<ViewKey, Long> counts = new HashMap<>();
+        for (EndpointHitEntity hit : hits) {
+            counts.merge(new ViewKey(hit.getAppId(), hit.getUriId()), 1L, Long::sum);
+        }
+        counts.forEach((key, count) -> deltas.merge(key, count, Long::sum));
+    }
+
+    public Optional<SseEmitter> subscribe(String app, String uriPrefix) {
+        if (slots.incrementAndGet() > maxSubscribers) {
+            slots.decrementAndGet();
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, app, uriPrefix);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        return Optional.of(emitter);
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void publish() {
+        if (subscribers.isEmpty()) {
+            deltas.clear();
+            return;
+        }
+        List<ViewStats> frame = new ArrayList<>();
+        for (ViewKey key : deltas.keySet()) {
+            Long hits = deltas.remove(key);
+            if (hits == null) {
+                continue;
+            }
+            frame.add(ViewStats.builder()
+                    .app(dictionary.appName(key.appId()))
+                    .uri(dictionary.uriName(key.uriId()))
+                    .hits(hits)
+                    .build());
+        }
+        frame.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            List<ViewStats> filtered = frame.stream()
+                    .filter(subscriber::accepts)
+                    .toList();
+            if (filtered.isEmpty() && now - subscriber.lastSent < heartbeatNanos) {
+                continue;
+            }
+            if (!subscriber.sending.compareAndSet(false, true)) {
+                dropped.increment();
+                continue;
+            }
+            sender.execute(() -> send(subscriber, filtered));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    private void send(Subscriber subscriber, List<ViewStats> frame) {
+        try {
+            if (frame.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name("hits")
+                        .data(frame, MediaType.APPLICATION_JSON));
+            }
+            subscriber.lastSent = System.nanoTime();
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(subscriber);
+            log.debug("Подписчик потока хитов отключился: {}", e.getMessage());
+        } finally {
+            subscriber.sending.set(false);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            slots.decrementAndGet();
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final String app;
+        private final String uriPrefix;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long lastSent = System.nanoTime();
+
+        private Subscriber(SseEmitter emitter, String app, String uriPrefix) {
+            this.emitter = emitter;
+            this.app = app;
+            this.uriPrefix = uriPrefix;
+        }
+
+        private boolean accepts(ViewStats views) {
+            return (app == null || app.equals(views.getApp()))
+                    && (uriPrefix == null || views.getUri().startsWith(uriPrefix));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.HitSampleRepository;
+import ru.practicum.repository.PartitionRepository;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Component
+public class PartitionManager {
+    private static final String PREFIX = "endpoint_hit_p";
+
+    private final PartitionRepository partitionRepository;
+    private final HitSampleRepository sampleRepository;
+    private final RollupRepository rollupRepository;
+    private final ViewsCache viewsCache;
+    private final TransactionTemplate ddlTransaction;
+    private final Interval interval;
+    private final int premake;
+    private final int retentionDays;
+    private final Set<LocalDateTime> known = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean partitioned;
+
+    public PartitionManager(PartitionRepository partitionRepository,
+                            HitSampleRepository sampleRepository,
+                            RollupRepository rollupRepository,
+                            ViewsCache viewsCache,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${stats.partition.interval:day}") Interval interval,
+                            @Value("${stats.partition.premake:7}") int premake,
+                            @Value("${stats.partition.retention-days:0}") int retentionDays) {
+        this.partitionRepository = partitionRepository;
+        this.sampleRepository = sampleRepository;
+        this.rollupRepository = rollupRepository;
+        this.viewsCache = viewsCache;
+        this.ddlTransaction = new TransactionTemplate(transactionManager);
+        this.ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.interval = interval;
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        partitioned = partitionRepository.isPartitioned();
+        if (!partitioned) {
+            log.warn("Таблица endpoint_hit не секционирована, управление секциями отключено");
+            return;
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.maintenance-cron:0 5 * * * *}")
+    public synchronized void maintain() {
+        if (!partitioned) {
+            return;
+        }
+        refreshKnown();
+        LocalDateTime current = interval.floor(LocalDateTime.now());
+        for (int i = 0; i <= premake; i++) {
+            create(interval.plus(current, i));
+        }
+        if (retentionDays > 0) {
+            LocalDateTime threshold = LocalDateTime.now().minusDays(retentionDays);
+            dropExpired(threshold);
+            LocalDateTime retainedFrom = interval.floor(threshold);
+            int deleted = sampleRepository.deleteBefore(retainedFrom);
+            if (deleted > 0) {
+                log.info("Удалено {} устаревших строк выборки хитов", deleted);
+            }
+            for (BucketSize size : BucketSize.values()) {
+                deleted = rollupRepository.deleteBefore(size, retainedFrom);
+                if (deleted > 0) {
+                    log.info("Удалено {} устаревших строк из {}", deleted, size.getTable());
+                }
+            }
+            viewsCache.evictBefore(retainedFrom);
+        }
+    }
+
+    public boolean isRetained(LocalDateTime timestamp) {
+        return retentionDays <= 0
+                || !timestamp.isBefore(interval.floor(LocalDateTime.now().minusDays(retentionDays)));
+    }
+
+    public void ensurePartitions(Collection<LocalDateTime> timestamps) {
+        if (!partitioned) {
+            return;
+        }
+        Set<LocalDateTime> missing = new TreeSet<>();
+        for (LocalDateTime timestamp : timestamps) {
+            LocalDateTime from = interval.floor(timestamp);
+            if (!known.contains(from)) {
+                missing.add(from);
+            }
+        }
+        missing.forEach(this::create);
+    }
+
+    private synchronized void create(LocalDateTime from) {
+        if (known.contains(from)) {
+            return;
+        }
+        String name = PREFIX + interval.suffix(from);
+        ddlTransaction.executeWithoutResult(status -> partitionRepository.create(name, from, interval.plus(from, 1)));
+        known.add(from);
+        log.info("Создана секция {}", name);
+    }
+
+    private synchronized void dropExpired(LocalDateTime threshold) {
+        for (String name : partitionRepository.findPartitions()) {
+            LocalDateTime from = parse(name);
+            if (from != null && !interval.plus(from, 1).isAfter(threshold)) {
+                ddlTransaction.executeWithoutResult(status -> partitionRepository.drop(name));
+                known.remove(from);
+                log.info("Удалена устаревшая секция {}", name);
+            }
+        }
+    }
+
+    private void refreshKnown() {
+        known.clear();
+        for (String name : partitionRepository.findPartitions()) {
+            LocalDateTime from = parse(name);
+            if (from != null) {
+                known.add(from);
+            }
+        }
+    }
+
+    private LocalDateTime parse(String name) {
+        if (!name.startsWith(PREFIX)) {
+            return null;
+        }
+        String suffix = name.substring(PREFIX.length());
+        if (suffix.length() == 8) {
+            return LocalDate.parse(suffix, DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay();
+        }
+        if (suffix.length() == 6) {
+            return LocalDate.parse(suffix + "01", DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay();
+        }
+        return null;
+    }
+
+    public enum Interval {
+        DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+        MONTH(ChronoUnit.MONTHS, "yyyyMM");
+
+        private final ChronoUnit unit;
+        private final DateTimeFormatter format;
+
+        Interval(ChronoUnit unit, String pattern) {
+            this.unit = unit;
+            this.format = DateTimeFormatter.ofPattern(pattern);
+        }
+
+        LocalDateTime floor(LocalDateTime time) {
+            LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+            return this == MONTH ? day.withDayOfMonth(1) : day;
+        }
+
+        LocalDateTime plus(LocalDateTime from, long amount) {
+            return from.plus(amount, unit);
+        }
+
+        String suffix(LocalDateTime from) {
+            return from.format(format);
+        }
+    }
+}
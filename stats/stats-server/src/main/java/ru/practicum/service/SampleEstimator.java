@@ -0,0 +1,44 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.ViewStats;
+import ru.practicum.repository.HitSampleRepository;
+import ru.practicum.repository.SampleCounts;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class SampleEstimator {
+    private static final double Z_95 = 1.96;
+
+    private final HitSampleRepository sampleRepository;
+    private final DictionaryCache dictionary;
+
+    public List<ViewStats> estimate(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, boolean unique) {
+        List<ViewStats> views = new ArrayList<>();
+        sampleRepository.findCounts(from, to, uriIds, counts -> views.add(toViewStats(counts, unique)));
+        views.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return views;
+    }
+
+    private ViewStats toViewStats(SampleCounts counts, boolean unique) {
+        double rate = HitSampleRepository.RATE;
+        long sampled = unique ? counts.visitors() : counts.hits();
+        long squares = unique ? counts.visitors() : counts.squares();
+        double estimate = sampled / rate;
+        double halfWidth = Z_95 * Math.sqrt((1 - rate) * squares) / rate;
+        return ViewStats.builder()
+                .app(dictionary.appName(counts.key().appId()))
+                .uri(dictionary.uriName(counts.key().uriId()))
+                .hits(Math.round(estimate))
+                .errorBound(halfWidth / estimate)
+                .lowerBound(Math.max(sampled, Math.round(estimate - halfWidth)))
+                .upperBound(Math.round(estimate + halfWidth))
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.service;
+
+import lombok.Getter;
+import ru.practicum.repository.BucketSize;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+public enum SeriesBucket {
+    MINUTE(BucketSize.MINUTE, ChronoUnit.MINUTES),
+    HOUR(BucketSize.HOUR, ChronoUnit.HOURS),
+    DAY(BucketSize.HOUR, ChronoUnit.DAYS);
+
+    private final BucketSize source;
+    private final ChronoUnit unit;
+
+    SeriesBucket(BucketSize source, ChronoUnit unit) {
+        this.source = source;
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+}
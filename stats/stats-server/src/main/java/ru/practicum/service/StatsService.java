@@ -1,13 +1,31 @@
 package ru.practicum.service;
 
 import ru.practicum.EndpointHit;
+import ru.practicum.LatencyStats;
 import ru.practicum.ViewStats;
+import ru.practicum.ViewStatsBatchRequest;
 import ru.practicum.ViewStatsRequest;
+import ru.practicum.ViewTimeSeries;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void recordHit(EndpointHit hit);
 
+    void recordHits(List<EndpointHit> hits);
+
+    void recordLatencies(List<EndpointHit> hits);
+
     List<ViewStats> calculateViews(ViewStatsRequest request);
+
+    List<ViewStats> calculateViews(ViewStatsBatchRequest request);
+
+    List<ViewTimeSeries> calculateTimeSeries(ViewStatsRequest request, String bucket);
+
+    List<ViewStats> findTop(String window, int limit);
+
+    List<LatencyStats> calculateLatency(ViewStatsRequest request);
+
+    void streamViews(ViewStatsRequest request, Consumer<ViewStats> consumer);
 }
@@ -2,54 +2,320 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.Accuracy;
 import ru.practicum.EndpointHit;
+import ru.practicum.LatencyStats;
+import ru.practicum.UniqueMode;
 import ru.practicum.ViewStats;
+import ru.practicum.ViewStatsBatchRequest;
 import ru.practicum.ViewStatsRequest;
+import ru.practicum.ViewTimeSeries;
+import ru.practicum.entity.EndpointHitEntity;
 import ru.practicum.mapper.EndpointHitMapper;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.RollupPlan;
+import ru.practicum.repository.RollupRepository;
 import ru.practicum.repository.StatsRepository;
+import ru.practicum.repository.UriPlan;
+import ru.practicum.repository.ViewKey;
+import ru.practicum.repository.ViewStatsStreamRepository;
+import ru.practicum.sketch.HyperLogLog;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
     private final StatsRepository repository;
+    private final RollupRepository rollupRepository;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final HitStaging hitStaging;
+    private final VisitorSketches visitorSketches;
+    private final DictionaryCache dictionary;
     private final EndpointHitMapper mapper;
+    private final HotWindow hotWindow;
+    private final ViewsCache viewsCache;
+    private final ViewStatsStreamRepository streamRepository;
+    private final VisitorIndex visitorIndex;
+    private final TrendingUris trendingUris;
+    private final TimeSeriesCalculator timeSeriesCalculator;
+    private final SampleEstimator sampleEstimator;
+    private final LatencyHistograms latencyHistograms;
+    private final LiveHitStream liveHitStream;
+    private final PartitionManager partitionManager;
 
     @Override
     public void recordHit(EndpointHit hit) {
-        repository.save(mapper.toEntity(hit));
+        recordHits(List.of(hit));
+    }
+
+    @Override
+    public void recordHits(List<EndpointHit> hits) {
+        hits.forEach(mapper::validate);
+        List<EndpointHitEntity> entities = hits.stream()
+                .map(mapper::toEntity)
+                .toList();
+        List<EndpointHitEntity> accepted = entities;
+        if (hitBuffer.isEnabled()) {
+            accepted = entities.stream()
+                    .filter(hitBuffer::add)
+                    .toList();
+        } else if (hitStaging.isEnabled()) {
+            hitStaging.write(entities);
+        } else {
+            hitWriter.write(entities);
+        }
+        hotWindow.record(accepted);
+        trendingUris.record(accepted);
+        liveHitStream.record(accepted);
+        recordLatencies(hits, entities);
+    }
+
+    @Override
+    public void recordLatencies(List<EndpointHit> hits) {
+        hits.forEach(mapper::validate);
+        recordLatencies(hits, hits.stream()
+                .map(mapper::toEntity)
+                .toList());
     }
 
     @Override
     public List<ViewStats> calculateViews(ViewStatsRequest request) {
-        List<Object[]> rawStats = request.getUris().isEmpty()
-                ? repository.findViewStatsWithoutUris(
-                request.getStart(),
-                request.getEnd(),
-                request.isUnique())
-                : repository.findViewStatsWithUris(
+        List<Integer> uriIds = dictionary.findUriIds(request.getUris());
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ViewStats> views = calculateViews(request, uriIds);
+        Integer limit = request.getLimit();
+        return limit == null || views.size() <= limit ? views : views.subList(0, limit);
+    }
+
+    @Override
+    public List<ViewStats> calculateViews(ViewStatsBatchRequest request) {
+        Map<String, Integer> uriIds = dictionary.findUris(request.getRanges().stream()
+                .map(ViewStatsBatchRequest.UriStart::getUri)
+                .toList());
+        Map<Integer, LocalDateTime> starts = new HashMap<>();
+        for (ViewStatsBatchRequest.UriStart range : request.getRanges()) {
+            Integer uriId = uriIds.get(range.getUri());
+            if (uriId != null) {
+                starts.merge(uriId, range.getStart(), (left, right) -> left.isBefore(right) ? left : right);
+            }
+        }
+        if (starts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        LocalDateTime to = request.getEnd().plusSeconds(1);
+        Map<ViewKey, Long> counts = new HashMap<>();
+        if (request.isUnique()) {
+            rollupRepository.countVisitorsSince(starts, to, counts);
+            return toViewStats(counts);
+        }
+        Map<RollupPlan.Segment, List<Integer>> hotUris = new HashMap<>();
+        List<UriPlan> plans = new ArrayList<>();
+        starts.forEach((uriId, from) -> {
+            Optional<RollupPlan.Segment> hot = hotSegment(from, to);
+            hot.ifPresent(segment -> hotUris.computeIfAbsent(segment, k -> new ArrayList<>()).add(uriId));
+            storedPlans(from, to, hot).forEach(plan -> plans.add(new UriPlan(uriId, plan)));
+        });
+        hotUris.forEach((segment, ids) -> hotWindow.countHits(segment.from(), segment.to(), ids)
+                .forEach((key, value) -> counts.merge(key, value, Long::sum)));
+        rollupRepository.countHits(plans, counts);
+        return toViewStats(counts);
+    }
+
+    @Override
+    public List<ViewTimeSeries> calculateTimeSeries(ViewStatsRequest request, String bucket) {
+        SeriesBucket size = SeriesBucket.valueOf(bucket.toUpperCase());
+        List<Integer> uriIds = dictionary.findUriIds(request.getUris());
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return timeSeriesCalculator.calculate(request.getStart(), request.getEnd(), uriIds, size);
+    }
+
+    @Override
+    public List<ViewStats> findTop(String window, int limit) {
+        return trendingUris.top(TopWindow.fromParam(window), limit);
+    }
+
+    @Override
+    public List<LatencyStats> calculateLatency(ViewStatsRequest request) {
+        List<Integer> uriIds = dictionary.findUriIds(request.getUris());
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return latencyHistograms.calculate(request.getStart(), request.getEnd().plusSeconds(1), uriIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamViews(ViewStatsRequest request, Consumer<ViewStats> consumer) {
+        if (request.getAccuracy() == Accuracy.SAMPLED
+                || (request.isUnique() && request.getUniqueMode() == UniqueMode.APPROX)
+                || (!request.isUnique() && (hitBuffer.isEnabled() || hitStaging.isEnabled()))) {
+            calculateViews(request).forEach(consumer);
+            return;
+        }
+        List<Integer> uriIds = dictionary.findUriIds(request.getUris());
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime from = request.getStart();
+        LocalDateTime to = request.getEnd().plusSeconds(1);
+        if (request.isUnique()) {
+            streamRepository.streamUniqueHits(from, to, uriIds, request.getLimit(), consumer);
+        } else {
+            streamRepository.streamHits(RollupPlan.of(from, to), uriIds, request.getLimit(), consumer);
+        }
+    }
+
+    private List<ViewStats> calculateViews(ViewStatsRequest request, List<Integer> uriIds) {
+
+        LocalDateTime from = request.getStart();
+        LocalDateTime to = request.getEnd().plusSeconds(1);
+        if (request.getAccuracy() == Accuracy.SAMPLED) {
+            return sampleEstimator.estimate(from, to, uriIds, request.isUnique());
+        }
+        if (!request.isUnique()) {
+            Map<ViewKey, Long> counts = new HashMap<>();
+            Optional<RollupPlan.Segment> closed = viewsCache.closedSegment(from, to);
+            if (closed.isPresent()) {
+                viewsCache.countHits(closed.get(), uriIds, counts);
+                countLiveHits(from, closed.get().from(), uriIds, counts);
+                countLiveHits(closed.get().to(), to, uriIds, counts);
+            } else {
+                countLiveHits(from, to, uriIds, counts);
+            }
+            return toViewStats(counts);
+        }
+        if (request.getUniqueMode() == UniqueMode.APPROX) {
+            Map<ViewKey, HyperLogLog> visitors = new HashMap<>();
+            Optional<RollupPlan.Segment> hot = hotSegment(from, to);
+            hot.ifPresent(segment -> hotWindow.collectVisitors(segment.from(), segment.to(), uriIds)
+                    .forEach((key, ips) -> {
+                        HyperLogLog sketch = visitors.computeIfAbsent(key, k -> new HyperLogLog());
+                        ips.forEach(ip -> sketch.add(ip.getAddress()));
+                    }));
+            storedPlans(from, to, hot).forEach(plan -> visitorSketches.collect(plan, uriIds, visitors));
+            return visitorSketches.estimate(visitors);
+        }
+
+        if (uriIds.isEmpty()) {
+            return buildViewStatsList(repository.findViewStatsWithoutUris(
+                    request.getStart(),
+                    request.getEnd(),
+                    request.isUnique()));
+        }
+
+        Map<ViewKey, Long> indexed = new HashMap<>();
+        List<Integer> remaining = new ArrayList<>();
+        visitorIndex.find(uriIds).forEach((uriId, lifetimes) -> {
+            if (lifetimes.stream().allMatch(lifetime -> lifetime.isWithin(from, to)
+                    && partitionManager.isRetained(lifetime.firstSeen()))) {
+                lifetimes.forEach(lifetime -> indexed.put(new ViewKey(lifetime.appId(), uriId), lifetime.visitors()));
+            } else {
+                remaining.add(uriId);
+            }
+        });
+        if (remaining.isEmpty()) {
+            return toViewStats(indexed);
+        }
+
+        List<ViewStats> views = new ArrayList<>(toViewStats(indexed));
+        views.addAll(buildViewStatsList(repository.findViewStatsWithUris(
                 request.getStart(),
                 request.getEnd(),
-                request.getUris(),
-                request.isUnique());
+                remaining.toArray(Integer[]::new),
+                request.isUnique())));
+        views.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return views;
+    }
+
+    private void recordLatencies(List<EndpointHit> hits, List<EndpointHitEntity> entities) {
+        for (int i = 0; i < hits.size(); i++) {
+            Long responseTimeMs = hits.get(i).getResponseTimeMs();
+            if (responseTimeMs != null) {
+                latencyHistograms.record(entities.get(i), responseTimeMs);
+            }
+        }
+    }
+
+    private List<ViewStats> toViewStats(Map<ViewKey, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(dictionary.appName(entry.getKey().appId()))
+                        .uri(dictionary.uriName(entry.getKey().uriId()))
+                        .hits(entry.getValue())
+                        .build())
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    private void countLiveHits(LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                               Map<ViewKey, Long> counts) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        Optional<RollupPlan.Segment> hot = hotSegment(from, to);
+        hot.ifPresent(segment -> hotWindow.countHits(segment.from(), segment.to(), uriIds)
+                .forEach((key, value) -> counts.merge(key, value, Long::sum)));
+        storedPlans(from, to, hot).forEach(plan -> rollupRepository.countHits(plan, uriIds, counts));
+    }
+
+    private Optional<RollupPlan.Segment> hotSegment(LocalDateTime from, LocalDateTime to) {
+        if (!hotWindow.isEnabled()) {
+            return Optional.empty();
+        }
+        LocalDateTime windowFrom = hotWindow.coveredFrom();
+        LocalDateTime windowTo = hotWindow.coveredTo();
+        LocalDateTime hotFrom = BucketSize.MINUTE.ceil(from);
+        if (hotFrom.isBefore(windowFrom)) {
+            hotFrom = windowFrom;
+        }
+        LocalDateTime hotTo = BucketSize.MINUTE.floor(to);
+        if (hotTo.isAfter(windowTo)) {
+            hotTo = windowTo;
+        }
+        return hotFrom.isBefore(hotTo) ? Optional.of(new RollupPlan.Segment(hotFrom, hotTo)) : Optional.empty();
+    }
 
-        return buildViewStatsList(rawStats);
+    private List<RollupPlan> storedPlans(LocalDateTime from, LocalDateTime to, Optional<RollupPlan.Segment> hot) {
+        if (hot.isEmpty()) {
+            return List.of(RollupPlan.of(from, to));
+        }
+        List<RollupPlan> plans = new ArrayList<>(2);
+        if (from.isBefore(hot.get().from())) {
+            plans.add(RollupPlan.of(from, hot.get().from()));
+        }
+        if (hot.get().to().isBefore(to)) {
+            plans.add(RollupPlan.of(hot.get().to(), to));
+        }
+        return plans;
     }
 
     private List<ViewStats> buildViewStatsList(List<Object[]> rawStats) {
         return Objects.requireNonNullElse(rawStats, Collections.emptyList()).stream()
                 .map(obj -> {
                     Object[] row = (Object[]) obj;
-                    return new ViewStats(
-                            Objects.requireNonNull((String) row[0], "app cannot be null"),
-                            Objects.requireNonNull((String) row[1], "uri cannot be null"),
-                            Optional.ofNullable((Number) row[2]).map(Number::longValue).orElse(0L)
-                    );
+                    return ViewStats.builder()
+                            .app(Objects.requireNonNull((String) row[0], "app cannot be null"))
+                            .uri(Objects.requireNonNull((String) row[1], "uri cannot be null"))
+                            .hits(Optional.ofNullable((Number) row[2]).map(Number::longValue).orElse(0L))
+                            .build();
                 })
                 .collect(Collectors.toList());
     }
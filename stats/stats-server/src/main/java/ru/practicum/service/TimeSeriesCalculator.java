@@ -0,0 +1,96 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ViewTimeSeries;
+import ru.practicum.repository.RollupKey;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.ViewKey;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+public class TimeSeriesCalculator {
+    private final RollupRepository rollupRepository;
+    private final VisitorSketches visitorSketches;
+    private final DictionaryCache dictionary;
+    private final long maxBuckets;
+    private final long maxPoints;
+
+    public TimeSeriesCalculator(RollupRepository rollupRepository,
+                                VisitorSketches visitorSketches,
+                                DictionaryCache dictionary,
+                                @Value("${stats.timeseries.max-buckets:10000}") long maxBuckets,
+                                @Value("${stats.timeseries.max-points:100000}") long maxPoints) {
+        this.rollupRepository = rollupRepository;
+        this.visitorSketches = visitorSketches;
+        this.dictionary = dictionary;
+        this.maxBuckets = maxBuckets;
+        this.maxPoints = maxPoints;
+    }
+
+    public List<ViewTimeSeries> calculate(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                          SeriesBucket bucket) {
+        LocalDateTime from = bucket.floor(start);
+        LocalDateTime to = bucket.floor(end).plus(1, bucket.getUnit());
+        long buckets = bucket.getUnit().between(from, to);
+        if (buckets > maxBuckets) {
+            throw new IllegalArgumentException("Слишком много интервалов, максимум " + maxBuckets);
+        }
+        if (!uriIds.isEmpty() && buckets * uriIds.size() > maxPoints) {
+            throw new IllegalArgumentException("Слишком много точек ряда, максимум " + maxPoints);
+        }
+
+        Map<ViewKey, TreeMap<LocalDateTime, Point>> series = new HashMap<>();
+        long[] points = new long[1];
+        rollupRepository.findSeries(bucket.getSource(), from, to, uriIds, (key, hits, visitors) -> {
+            Point point = point(series, key, bucket, points);
+            point.hits += hits;
+            if (visitors != null) {
+                point.visitors.merge(HyperLogLog.fromBytes(visitors));
+            }
+        });
+        visitorSketches.collectPending(bucket.getSource(), from, to, uriIds,
+                (key, visitors) -> point(series, key, bucket, points).visitors.merge(visitors));
+
+        double errorBound = HyperLogLog.relativeError();
+        return series.entrySet().stream()
+                .map(entry -> ViewTimeSeries.builder()
+                        .app(dictionary.appName(entry.getKey().appId()))
+                        .uri(dictionary.uriName(entry.getKey().uriId()))
+                        .points(entry.getValue().entrySet().stream()
+                                .map(point -> ViewTimeSeries.Point.builder()
+                                        .bucket(point.getKey())
+                                        .hits(point.getValue().hits)
+                                        .unique(point.getValue().visitors.estimate())
+                                        .build())
+                                .toList())
+                        .errorBound(errorBound)
+                        .build())
+                .sorted(Comparator.comparing(ViewTimeSeries::getUri).thenComparing(ViewTimeSeries::getApp))
+                .toList();
+    }
+
+    private Point point(Map<ViewKey, TreeMap<LocalDateTime, Point>> series, RollupKey key, SeriesBucket bucket,
+                        long[] points) {
+        return series.computeIfAbsent(new ViewKey(key.appId(), key.uriId()), k -> new TreeMap<>())
+                .computeIfAbsent(bucket.floor(key.bucket()), k -> {
+                    if (++points[0] > maxPoints) {
+                        throw new IllegalArgumentException("Слишком много точек ряда, максимум " + maxPoints
+                                + ", сузьте период или список uris");
+                    }
+                    return new Point();
+                });
+    }
+
+    private static class Point {
+        private long hits;
+        private final HyperLogLog visitors = new HyperLogLog();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+@Getter
+public enum TopWindow {
+    FIVE_MINUTES("5m", Duration.ofMinutes(5), Duration.ofMinutes(1)),
+    HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(5)),
+    DAY("24h", Duration.ofHours(24), Duration.ofHours(1));
+
+    private final String param;
+    private final Duration length;
+    private final Duration slot;
+
+    TopWindow(String param, Duration length, Duration slot) {
+        this.param = param;
+        this.length = length;
+        this.slot = slot;
+    }
+
+    public int getSlots() {
+        return (int) length.dividedBy(slot);
+    }
+
+    public static TopWindow fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(window -> window.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестное окно: " + param));
+    }
+}
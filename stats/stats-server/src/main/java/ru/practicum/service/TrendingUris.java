@@ -0,0 +1,121 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ViewStats;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.sketch.CountMinSketch;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+public class TrendingUris {
+    private final DictionaryCache dictionary;
+    private final int capacity;
+    private final Map<TopWindow, SlidingSketch> windows = new EnumMap<>(TopWindow.class);
+
+    public TrendingUris(DictionaryCache dictionary,
+                        @Value("${stats.top.depth:4}") int depth,
+                        @Value("${stats.top.width:2048}") int width,
+                        @Value("${stats.top.capacity:100}") int capacity) {
+        this.dictionary = dictionary;
+        this.capacity = capacity;
+        for (TopWindow window : TopWindow.values()) {
+            windows.put(window, new SlidingSketch(window, depth, width, capacity));
+        }
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        windows.values().forEach(window -> window.record(hits, now));
+    }
+
+    public List<ViewStats> top(TopWindow window, int limit) {
+        if (limit < 1 || limit > capacity) {
+            throw new IllegalArgumentException("Параметр limit должен быть от 1 до " + capacity);
+        }
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        return windows.get(window).top(now).entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .map(entry -> ViewStats.builder()
+                        .app(dictionary.appName((int) (entry.getKey() >>> 32)))
+                        .uri(dictionary.uriName(entry.getKey().intValue()))
+                        .hits(entry.getValue())
+                        .build())
+                .toList();
+    }
+
+    private static long key(EndpointHitEntity hit) {
+        return ((long) hit.getAppId() << 32) | (hit.getUriId() & 0xFFFFFFFFL);
+    }
+
+    private static class SlidingSketch {
+        private final long slotSeconds;
+        private final long[] epochs;
+        private final CountMinSketch[] counts;
+        private final SpaceSaving[] heavyHitters;
+
+        SlidingSketch(TopWindow window, int depth, int width, int capacity) {
+            this.slotSeconds = window.getSlot().toSeconds();
+            this.epochs = new long[window.getSlots()];
+            this.counts = new CountMinSketch[epochs.length];
+            this.heavyHitters = new SpaceSaving[epochs.length];
+            for (int i = 0; i < epochs.length; i++) {
+                epochs[i] = -1;
+                counts[i] = new CountMinSketch(depth, width);
+                heavyHitters[i] = new SpaceSaving(capacity);
+            }
+        }
+
+        synchronized void record(List<EndpointHitEntity> hits, long now) {
+            long newest = now / slotSeconds;
+            long oldest = newest - epochs.length + 1;
+            for (EndpointHitEntity hit : hits) {
+                long epoch = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC) / slotSeconds;
+                if (epoch < oldest || epoch > newest) {
+                    continue;
+                }
+                int slot = (int) (epoch % epochs.length);
+                if (epochs[slot] != epoch) {
+                    epochs[slot] = epoch;
+                    counts[slot].clear();
+                    heavyHitters[slot].clear();
+                }
+                long key = key(hit);
+                counts[slot].add(key, 1);
+                heavyHitters[slot].add(key, 1);
+            }
+        }
+
+        synchronized Map<Long, Long> top(long now) {
+            long oldest = now / slotSeconds - epochs.length + 1;
+            Set<Long> candidates = new HashSet<>();
+            for (int slot = 0; slot < epochs.length; slot++) {
+                if (epochs[slot] >= oldest) {
+                    candidates.addAll(heavyHitters[slot].keys());
+                }
+            }
+            Map<Long, Long> estimates = new HashMap<>();
+            for (Long key : candidates) {
+                long total = 0;
+                for (int slot = 0; slot < epochs.length; slot++) {
+                    if (epochs[slot] >= oldest) {
+                        total += counts[slot].estimate(key);
+                    }
+                }
+                estimates.put(key, total);
+            }
+            return estimates;
+        }
+    }
+}
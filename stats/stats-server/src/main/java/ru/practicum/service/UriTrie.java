@@ -0,0 +1,117 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.repository.DictionaryRepository;
+import ru.practicum.repository.DictionaryRepository.Dimension;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+public class UriTrie {
+    private static final String ANY_SEGMENT = "*";
+    private static final String ANY_PATH = "**";
+    private static final int REFRESH_OVERLAP = 1000;
+
+    private final DictionaryRepository repository;
+    private final long refreshNanos;
+    private final int maxMatches;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private volatile boolean loaded;
+    private volatile long refreshedAt;
+    private int maxId;
+
+    public UriTrie(DictionaryRepository repository,
+                   @Value("${stats.uri-patterns.refresh-interval:PT10S}") Duration refreshInterval,
+                   @Value("${stats.uri-patterns.max-matches:1000}") int maxMatches) {
+        this.repository = repository;
+        this.refreshNanos = refreshInterval.toNanos();
+        this.maxMatches = maxMatches;
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.contains(ANY_SEGMENT);
+    }
+
+    public void add(String uri, int id) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (String segment : uri.split("/", -1)) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.uri = uri;
+            node.id = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Integer> match(String pattern) {
+        String[] segments = pattern.split("/", -1);
+        for (String segment : segments) {
+            if (isPattern(segment) && !segment.equals(ANY_SEGMENT) && !segment.equals(ANY_PATH)) {
+                throw new IllegalArgumentException("Шаблон может содержать * и ** только целым сегментом: " + pattern);
+            }
+        }
+        refresh();
+        Map<String, Integer> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            match(root, segments, 0, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void match(Node node, String[] segments, int index, Map<String, Integer> result) {
+        if (index == segments.length) {
+            if (node.id != null && result.put(node.uri, node.id) == null && result.size() > maxMatches) {
+                throw new IllegalArgumentException("Шаблон совпадает больше чем с " + maxMatches + " uri: "
+                        + String.join("/", segments));
+            }
+            return;
+        }
+        String segment = segments[index];
+        if (segment.equals(ANY_PATH)) {
+            match(node, segments, index + 1, result);
+            node.children.values().forEach(child -> match(child, segments, index, result));
+        } else if (segment.equals(ANY_SEGMENT)) {
+            node.children.values().forEach(child -> match(child, segments, index + 1, result));
+        } else {
+            Node child = node.children.get(segment);
+            if (child != null) {
+                match(child, segments, index + 1, result);
+            }
+        }
+    }
+
+    private void refresh() {
+        if (loaded && System.nanoTime() - refreshedAt < refreshNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded && System.nanoTime() - refreshedAt < refreshNanos) {
+                return;
+            }
+            repository.findAfter(Dimension.URI, Math.max(0, maxId - REFRESH_OVERLAP)).forEach((uri, id) -> {
+                add(uri, id);
+                maxId = Math.max(maxId, id);
+            });
+            refreshedAt = System.nanoTime();
+            loaded = true;
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String uri;
+        private Integer id;
+    }
+}
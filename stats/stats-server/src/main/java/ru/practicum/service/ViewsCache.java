@@ -0,0 +1,183 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.RollupPlan;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.ViewKey;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Component
+public class ViewsCache {
+    private final RollupRepository rollupRepository;
+    private final boolean enabled;
+    private final long maxEntries;
+    private final LinkedHashMap<BucketKey, Map<ViewKey, Long>> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+    private long entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ViewsCache(RollupRepository rollupRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${stats.cache.enabled:true}") boolean enabled,
+                      @Value("${stats.cache.max-entries:200000}") long maxEntries) {
+        this.rollupRepository = rollupRepository;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("stats.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("stats.cache.misses").register(meterRegistry);
+        Gauge.builder("stats.cache.size", this, ViewsCache::size).register(meterRegistry);
+        Gauge.builder("stats.cache.entries", this, ViewsCache::entries).register(meterRegistry);
+    }
+
+    public Optional<RollupPlan.Segment> closedSegment(LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime closedFrom = BucketSize.HOUR.ceil(from);
+        LocalDateTime closedTo = BucketSize.HOUR.floor(to.isAfter(now) ? now : to);
+        return closedFrom.isBefore(closedTo)
+                ? Optional.of(new RollupPlan.Segment(closedFrom, closedTo))
+                : Optional.empty();
+    }
+
+    public void countHits(RollupPlan.Segment segment, Collection<Integer> uriIds, Map<ViewKey, Long> counts) {
+        Set<Integer> uriSet = Set.copyOf(uriIds);
+        List<LocalDateTime> missing = new ArrayList<>();
+        synchronized (buckets) {
+            for (LocalDateTime hour = segment.from(); hour.isBefore(segment.to()); hour = hour.plusHours(1)) {
+                Map<ViewKey, Long> cached = buckets.get(new BucketKey(hour, uriSet));
+                if (cached == null) {
+                    missing.add(hour);
+                } else {
+                    cached.forEach((key, value) -> counts.merge(key, value, Long::sum));
+                }
+            }
+        }
+        hits.increment(ChronoUnit.HOURS.between(segment.from(), segment.to()) - missing.size());
+        if (missing.isEmpty()) {
+            return;
+        }
+        misses.increment(missing.size());
+
+        long loadedAt = generation.get();
+        List<Integer> uriList = List.copyOf(uriSet);
+        Map<LocalDateTime, Map<ViewKey, Long>> loaded = new HashMap<>();
+        for (RollupPlan.Segment run : runs(missing)) {
+            loaded.putAll(rollupRepository.countHitsByHour(run.from(), run.to(), uriList));
+        }
+        for (Map<ViewKey, Long> bucket : loaded.values()) {
+            bucket.forEach((key, value) -> counts.merge(key, value, Long::sum));
+        }
+        synchronized (buckets) {
+            if (generation.get() != loadedAt) {
+                return;
+            }
+            for (LocalDateTime hour : missing) {
+                Map<ViewKey, Long> bucket = loaded.getOrDefault(hour, Map.of());
+                Map<ViewKey, Long> previous = buckets.put(new BucketKey(hour, uriSet), bucket);
+                entries += weight(bucket) - (previous == null ? 0 : weight(previous));
+            }
+            evict();
+        }
+    }
+
+    public void invalidate(Collection<LocalDateTime> timestamps) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime open = BucketSize.HOUR.floor(LocalDateTime.now());
+        List<LocalDateTime> closed = timestamps.stream()
+                .map(BucketSize.HOUR::floor)
+                .filter(hour -> hour.isBefore(open))
+                .distinct()
+                .toList();
+        if (closed.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        Set<LocalDateTime> hours = Set.copyOf(closed);
+        synchronized (buckets) {
+            removeIf(key -> hours.contains(key.hour()));
+        }
+    }
+
+    public void evictBefore(LocalDateTime threshold) {
+        generation.incrementAndGet();
+        synchronized (buckets) {
+            removeIf(key -> key.hour().isBefore(threshold));
+        }
+    }
+
+    private int size() {
+        synchronized (buckets) {
+            return buckets.size();
+        }
+    }
+
+    private long entries() {
+        synchronized (buckets) {
+            return entries;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<BucketKey, Map<ViewKey, Long>>> eldest = buckets.entrySet().iterator();
+        while (entries > maxEntries && eldest.hasNext()) {
+            entries -= weight(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private void removeIf(Predicate<BucketKey> filter) {
+        Iterator<Map.Entry<BucketKey, Map<ViewKey, Long>>> iterator = buckets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BucketKey, Map<ViewKey, Long>> entry = iterator.next();
+            if (filter.test(entry.getKey())) {
+                entries -= weight(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long weight(Map<ViewKey, Long> bucket) {
+        return bucket.size() + 1L;
+    }
+
+    private static List<RollupPlan.Segment> runs(List<LocalDateTime> hours) {
+        List<RollupPlan.Segment> runs = new ArrayList<>();
+        LocalDateTime from = hours.getFirst();
+        LocalDateTime to = from.plusHours(1);
+        for (LocalDateTime hour : hours.subList(1, hours.size())) {
+            if (!hour.equals(to)) {
+                runs.add(new RollupPlan.Segment(from, to));
+                from = hour;
+            }
+            to = hour.plusHours(1);
+        }
+        runs.add(new RollupPlan.Segment(from, to));
+        return runs;
+    }
+
+    private record BucketKey(LocalDateTime hour, Set<Integer> uriIds) {
+    }
+}
@@ -0,0 +1,110 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.UriLifetime;
+import ru.practicum.repository.ViewKey;
+import ru.practicum.repository.VisitorIndexRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class VisitorIndex {
+    private static final Comparator<Object[]> VISITOR_ORDER = Comparator
+            .<Object[]>comparingInt(row -> (Integer) row[0])
+            .thenComparingInt(row -> (Integer) row[1])
+            .thenComparing(row -> (String) row[2]);
+
+    private final VisitorIndexRepository repository;
+    private final Map<Integer, List<UriLifetime>> lifetimes;
+    private final AtomicLong generation = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public VisitorIndex(VisitorIndexRepository repository,
+                        MeterRegistry meterRegistry,
+                        @Value("${stats.visitor-index.cache-size:10000}") int cacheSize) {
+        this.repository = repository;
+        this.lifetimes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<UriLifetime>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.hits = Counter.builder("stats.visitor-index.hits").register(meterRegistry);
+        this.misses = Counter.builder("stats.visitor-index.misses").register(meterRegistry);
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        TreeSet<Object[]> visitors = new TreeSet<>(VISITOR_ORDER);
+        SortedMap<ViewKey, UriLifetime> updates = new TreeMap<>();
+        for (EndpointHitEntity hit : hits) {
+            visitors.add(new Object[]{hit.getUriId(), hit.getAppId(), hit.getIp().getHostAddress()});
+            updates.merge(new ViewKey(hit.getAppId(), hit.getUriId()), new UriLifetime(hit.getAppId(),
+                    hit.getUriId(), 0, hit.getTimestamp(), hit.getTimestamp()), UriLifetime::merge);
+        }
+
+        Map<ViewKey, Long> inserted = repository.insertVisitors(new ArrayList<>(visitors));
+        updates.keySet().retainAll(inserted.keySet());
+        if (updates.isEmpty()) {
+            return;
+        }
+        inserted.forEach((key, count) -> updates.computeIfPresent(key, (k, lifetime) ->
+                lifetime.merge(new UriLifetime(k.appId(), k.uriId(), count, lifetime.firstSeen(),
+                        lifetime.lastSeen()))));
+        repository.upsertLifetimes(updates);
+    }
+
+    public Map<Integer, List<UriLifetime>> find(Collection<Integer> uriIds) {
+        Map<Integer, List<UriLifetime>> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        synchronized (lifetimes) {
+            for (Integer uriId : uriIds) {
+                List<UriLifetime> cached = lifetimes.get(uriId);
+                if (cached == null) {
+                    missing.add(uriId);
+                } else {
+                    result.put(uriId, cached);
+                }
+            }
+        }
+        hits.increment(uriIds.size() - missing.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        misses.increment(missing.size());
+
+        long loadedAt = generation.get();
+        Map<Integer, List<UriLifetime>> loaded = repository.findLifetimes(missing);
+        synchronized (lifetimes) {
+            for (Integer uriId : missing) {
+                List<UriLifetime> entries = loaded.getOrDefault(uriId, List.of());
+                result.put(uriId, entries);
+                if (generation.get() == loadedAt) {
+                    lifetimes.put(uriId, entries);
+                }
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(Collection<Integer> uriIds) {
+        generation.incrementAndGet();
+        synchronized (lifetimes) {
+            uriIds.forEach(lifetimes::remove);
+        }
+    }
+}
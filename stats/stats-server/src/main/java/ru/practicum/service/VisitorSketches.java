@@ -0,0 +1,169 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ViewStats;
+import ru.practicum.entity.EndpointHitEntity;
+import ru.practicum.repository.BucketSize;
+import ru.practicum.repository.RollupKey;
+import ru.practicum.repository.RollupPlan;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.ViewKey;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+@Slf4j
+@Component
+public class VisitorSketches {
+    private static final int LOCK_CHUNK = 500;
+
+    private final RollupRepository rollupRepository;
+    private final DictionaryCache dictionary;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<BucketSize, ConcurrentHashMap<RollupKey, HyperLogLog>> pending = new EnumMap<>(BucketSize.class);
+
+    public VisitorSketches(RollupRepository rollupRepository, DictionaryCache dictionary,
+                           TransactionTemplate transactionTemplate) {
+        this.rollupRepository = rollupRepository;
+        this.dictionary = dictionary;
+        this.transactionTemplate = transactionTemplate;
+        for (BucketSize size : BucketSize.values()) {
+            pending.put(size, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void record(List<EndpointHitEntity> hits) {
+        for (BucketSize size : BucketSize.values()) {
+            ConcurrentHashMap<RollupKey, HyperLogLog> deltas = pending.get(size);
+            for (EndpointHitEntity hit : hits) {
+                RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), size.floor(hit.getTimestamp()));
+                deltas.compute(key, (k, sketch) -> {
+                    HyperLogLog result = sketch == null ? new HyperLogLog() : sketch;
+                    result.add(hit.getIp().getAddress());
+                    return result;
+                });
+            }
+        }
+    }
+
+    public void collect(RollupPlan plan, List<Integer> uriIds, Map<ViewKey, HyperLogLog> visitors) {
+        Set<Integer> uriSet = Set.copyOf(uriIds);
+        rollupRepository.findSketches(BucketSize.MINUTE, plan.minuteHead(), plan.minuteTail(), uriIds,
+                (key, bytes) -> visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                        .merge(HyperLogLog.fromBytes(bytes)));
+        rollupRepository.findSketches(BucketSize.HOUR, plan.hours(), plan.hours(), uriIds,
+                (key, bytes) -> visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                        .merge(HyperLogLog.fromBytes(bytes)));
+        mergePending(BucketSize.MINUTE, plan.minuteHead(), plan.minuteTail(), uriSet, visitors);
+        mergePending(BucketSize.HOUR, plan.hours(), plan.hours(), uriSet, visitors);
+        rollupRepository.findEdgeVisitors(plan, uriIds,
+                (key, ip) -> visitors.computeIfAbsent(key, k -> new HyperLogLog()).add(ip));
+    }
+
+    public void collectPending(BucketSize size, LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                               BiConsumer<RollupKey, HyperLogLog> consumer) {
+        Set<Integer> uriSet = Set.copyOf(uriIds);
+        pending.get(size).forEach((key, sketch) -> {
+            if (key.bucket().isBefore(from) || !key.bucket().isBefore(to)) {
+                return;
+            }
+            if (!uriSet.isEmpty() && !uriSet.contains(key.uriId())) {
+                return;
+            }
+            pending.get(size).computeIfPresent(key, (k, current) -> {
+                consumer.accept(k, current);
+                return current;
+            });
+        });
+    }
+
+    public List<ViewStats> estimate(Map<ViewKey, HyperLogLog> visitors) {
+        double errorBound = HyperLogLog.relativeError();
+        return visitors.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(dictionary.appName(entry.getKey().appId()))
+                        .uri(dictionary.uriName(entry.getKey().uriId()))
+                        .hits(entry.getValue().estimate())
+                        .errorBound(errorBound)
+                        .build())
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.sketch.flush-interval:PT5S}")
+    public void flush() {
+        for (BucketSize size : BucketSize.values()) {
+            ConcurrentHashMap<RollupKey, HyperLogLog> deltas = pending.get(size);
+            TreeMap<RollupKey, HyperLogLog> batch = new TreeMap<>();
+            for (RollupKey key : deltas.keySet()) {
+                HyperLogLog delta = deltas.remove(key);
+                if (delta != null) {
+                    batch.put(key, delta);
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> store(size, batch));
+            } catch (RuntimeException e) {
+                log.error("Не удалось сохранить {} скетчей уникальных посетителей", batch.size(), e);
+                batch.forEach((key, delta) -> deltas.merge(key, delta, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                }));
+            }
+        }
+    }
+
+    private void store(BucketSize size, TreeMap<RollupKey, HyperLogLog> batch) {
+        List<RollupKey> keys = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < keys.size(); from += LOCK_CHUNK) {
+            List<RollupKey> chunk = keys.subList(from, Math.min(from + LOCK_CHUNK, keys.size()));
+            Map<RollupKey, byte[]> stored = rollupRepository.lockSketches(size, chunk);
+            Map<RollupKey, byte[]> updated = new HashMap<>();
+            for (RollupKey key : chunk) {
+                HyperLogLog sketch = batch.get(key);
+                byte[] current = stored.get(key);
+                if (current != null) {
+                    sketch.merge(HyperLogLog.fromBytes(current));
+                }
+                updated.put(key, sketch.toBytes());
+            }
+            rollupRepository.upsertSketches(size, updated);
+        }
+    }
+
+    private void mergePending(BucketSize size, RollupPlan.Segment first, RollupPlan.Segment second,
+                              Set<Integer> uriIds, Map<ViewKey, HyperLogLog> visitors) {
+        pending.get(size).forEach((key, sketch) -> {
+            if (!contains(first, key) && !contains(second, key)) {
+                return;
+            }
+            if (!uriIds.isEmpty() && !uriIds.contains(key.uriId())) {
+                return;
+            }
+            pending.get(size).computeIfPresent(key, (k, current) -> {
+                visitors.computeIfAbsent(new ViewKey(k.appId(), k.uriId()), v -> new HyperLogLog()).merge(current);
+                return current;
+            });
+        });
+    }
+
+    private boolean contains(RollupPlan.Segment segment, RollupKey key) {
+        return !key.bucket().isBefore(segment.from()) && key.bucket().isBefore(segment.to());
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.sketch;
+
+import java.util.Arrays;
+
+public class CountMinSketch {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int width;
+    private final long[][] counts;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length || width < 1) {
+            throw new IllegalArgumentException("Некорректные размеры Count-Min: " + depth + "x" + width);
+        }
+        this.width = width;
+        this.counts = new long[depth][width];
+    }
+
+    public void add(long key, long count) {
+        for (int row = 0; row < counts.length; row++) {
+            counts[row][index(key, row)] += count;
+        }
+    }
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][index(key, row)]);
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (long[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private int index(long key, int row) {
+        long hash = (key + SEEDS[row]) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= SEEDS[(row + 1) % SEEDS.length];
+        hash ^= hash >>> 29;
+        return (int) Math.floorMod(hash, (long) width);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class HyperLogLog {
+    public static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int SPARSE_LIMIT = REGISTERS / 16;
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private int[] sparse = new int[4];
+    private int sparseSize;
+    private byte[] dense;
+
+    public static double relativeError() {
+        return 1.96 * 1.04 / Math.sqrt(REGISTERS);
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() != PRECISION) {
+            throw new IllegalArgumentException("Неподдерживаемая точность HyperLogLog");
+        }
+        if (buffer.get() == DENSE) {
+            sketch.dense = new byte[REGISTERS];
+            buffer.get(sketch.dense);
+        } else {
+            int size = buffer.getInt();
+            for (int i = 0; i < size; i++) {
+                sketch.set(buffer.getShort() & 0xFFFF, buffer.get());
+            }
+        }
+        return sketch;
+    }
+
+    public void add(byte[] value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        set(index, (byte) rank);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.dense != null) {
+            for (int i = 0; i < REGISTERS; i++) {
+                if (other.dense[i] != 0) {
+                    set(i, other.dense[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                set(other.sparse[i] >>> 8, (byte) other.sparse[i]);
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < REGISTERS; i++) {
+            int rank = register(i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        if (dense != null) {
+            return ByteBuffer.allocate(2 + REGISTERS)
+                    .put((byte) PRECISION)
+                    .put(DENSE)
+                    .put(dense)
+                    .array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(6 + sparseSize * 3)
+                .put((byte) PRECISION)
+                .put(SPARSE)
+                .putInt(sparseSize);
+        for (int i = 0; i < sparseSize; i++) {
+            buffer.putShort((short) (sparse[i] >>> 8)).put((byte) sparse[i]);
+        }
+        return buffer.array();
+    }
+
+    private int register(int index) {
+        if (dense != null) {
+            return dense[index];
+        }
+        int position = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        int candidate = position >= 0 ? position : -position - 1;
+        return candidate < sparseSize && sparse[candidate] >>> 8 == index ? sparse[candidate] & 0xFF : 0;
+    }
+
+    private void set(int index, byte rank) {
+        if (dense != null) {
+            if (dense[index] < rank) {
+                dense[index] = rank;
+            }
+            return;
+        }
+        int position = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        int candidate = position >= 0 ? position : -position - 1;
+        if (candidate < sparseSize && sparse[candidate] >>> 8 == index) {
+            if ((sparse[candidate] & 0xFF) < rank) {
+                sparse[candidate] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize == SPARSE_LIMIT) {
+            toDense();
+            set(index, rank);
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        System.arraycopy(sparse, candidate, sparse, candidate + 1, sparseSize - candidate);
+        sparse[candidate] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private void toDense() {
+        dense = new byte[REGISTERS];
+        for (int i = 0; i < sparseSize; i++) {
+            dense[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private static long hash(byte[] value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
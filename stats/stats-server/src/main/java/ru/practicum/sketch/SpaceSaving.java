@@ -0,0 +1,70 @@
+package ru.practicum.sketch;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class SpaceSaving {
+    private final int capacity;
+    private final Map<Long, Long> counters;
+    private final TreeMap<Long, Set<Long>> buckets = new TreeMap<>();
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Некорректная ёмкость Space-Saving: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(long key, long count) {
+        Long current = counters.get(key);
+        if (current != null) {
+            unlink(key, current);
+            link(key, current + count);
+            return;
+        }
+        if (counters.size() < capacity) {
+            link(key, count);
+            return;
+        }
+        Map.Entry<Long, Set<Long>> min = buckets.firstEntry();
+        Iterator<Long> eldest = min.getValue().iterator();
+        Long evicted = eldest.next();
+        eldest.remove();
+        if (min.getValue().isEmpty()) {
+            buckets.remove(min.getKey());
+        }
+        counters.remove(evicted);
+        link(key, min.getKey() + count);
+    }
+
+    public long count(long key) {
+        return counters.getOrDefault(key, 0L);
+    }
+
+    public Set<Long> keys() {
+        return counters.keySet();
+    }
+
+    public void clear() {
+        counters.clear();
+        buckets.clear();
+    }
+
+    private void link(long key, long count) {
+        counters.put(key, count);
+        buckets.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void unlink(long key, long count) {
+        Set<Long> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
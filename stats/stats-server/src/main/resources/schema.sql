@@ -1,10 +1,190 @@
+CREATE SEQUENCE IF NOT EXISTS endpoint_hit_seq INCREMENT BY 50;
+
+CREATE OR REPLACE FUNCTION stats_detach_legacy_layout() RETURNS VOID
+LANGUAGE plpgsql AS '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = ''endpoint_hit'' AND column_name = ''app'') THEN
+        CREATE TABLE endpoint_hit_legacy AS SELECT app, uri, ip, timestamp FROM endpoint_hit;
+        DROP TABLE endpoint_hit;
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = ''endpoint_hit_minute'' AND column_name = ''app'') THEN
+        CREATE TABLE endpoint_hit_minute_legacy AS SELECT app, uri, bucket, hits FROM endpoint_hit_minute;
+        DROP TABLE endpoint_hit_minute;
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = ''endpoint_hit_hour'' AND column_name = ''app'') THEN
+        CREATE TABLE endpoint_hit_hour_legacy AS SELECT app, uri, bucket, hits FROM endpoint_hit_hour;
+        DROP TABLE endpoint_hit_hour;
+    END IF;
+END';
+
+SELECT stats_detach_legacy_layout();
+
+CREATE TABLE IF NOT EXISTS stats_app (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(1024) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stats_uri (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(1024) NOT NULL UNIQUE
+);
+
 CREATE TABLE IF NOT EXISTS endpoint_hit (
-    id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
-    app VARCHAR(1024) NOT NULL,
-    uri VARCHAR(1024) NOT NULL,
-    ip VARCHAR(45) NOT NULL,
+    id BIGINT NOT NULL,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip INET NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER TABLE endpoint_hit ADD COLUMN IF NOT EXISTS hit_count INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_uri_timestamp ON endpoint_hit(uri_id, timestamp);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_timestamp ON endpoint_hit USING BRIN (timestamp);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_minute (
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits BIGINT NOT NULL,
+    visitors BYTEA,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_minute_bucket ON endpoint_hit_minute(bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_hour (
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits BIGINT NOT NULL,
+    visitors BYTEA,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_hour_bucket ON endpoint_hit_hour(bucket);
+
+CREATE OR REPLACE FUNCTION stats_load_legacy_layout() RETURNS VOID
+LANGUAGE plpgsql AS '
+DECLARE
+    day DATE;
+BEGIN
+    IF to_regclass(''endpoint_hit_legacy'') IS NOT NULL THEN
+        INSERT INTO stats_app (name) SELECT DISTINCT app FROM endpoint_hit_legacy ON CONFLICT DO NOTHING;
+        INSERT INTO stats_uri (name) SELECT DISTINCT uri FROM endpoint_hit_legacy ON CONFLICT DO NOTHING;
+        FOR day IN SELECT DISTINCT CAST(timestamp AS DATE) FROM endpoint_hit_legacy LOOP
+            EXECUTE format(''CREATE TABLE IF NOT EXISTS endpoint_hit_p%s PARTITION OF endpoint_hit
+                    FOR VALUES FROM (%L) TO (%L)'', to_char(day, ''YYYYMMDD''), day, day + 1);
+        END LOOP;
+        INSERT INTO endpoint_hit (id, app_id, uri_id, ip, timestamp)
+        SELECT nextval(''endpoint_hit_seq''), a.id, u.id, CAST(l.ip AS INET), l.timestamp
+        FROM endpoint_hit_legacy l
+        JOIN stats_app a ON a.name = l.app
+        JOIN stats_uri u ON u.name = l.uri
+        WHERE pg_input_is_valid(l.ip, ''inet'');
+        DROP TABLE endpoint_hit_legacy;
+    END IF;
+    IF to_regclass(''endpoint_hit_minute_legacy'') IS NOT NULL THEN
+        INSERT INTO stats_app (name) SELECT DISTINCT app FROM endpoint_hit_minute_legacy ON CONFLICT DO NOTHING;
+        INSERT INTO stats_uri (name) SELECT DISTINCT uri FROM endpoint_hit_minute_legacy ON CONFLICT DO NOTHING;
+        INSERT INTO endpoint_hit_minute (app_id, uri_id, bucket, hits)
+        SELECT a.id, u.id, l.bucket, l.hits
+        FROM endpoint_hit_minute_legacy l
+        JOIN stats_app a ON a.name = l.app
+        JOIN stats_uri u ON u.name = l.uri;
+        DROP TABLE endpoint_hit_minute_legacy;
+    END IF;
+    IF to_regclass(''endpoint_hit_hour_legacy'') IS NOT NULL THEN
+        INSERT INTO stats_app (name) SELECT DISTINCT app FROM endpoint_hit_hour_legacy ON CONFLICT DO NOTHING;
+        INSERT INTO stats_uri (name) SELECT DISTINCT uri FROM endpoint_hit_hour_legacy ON CONFLICT DO NOTHING;
+        INSERT INTO endpoint_hit_hour (app_id, uri_id, bucket, hits)
+        SELECT a.id, u.id, l.bucket, l.hits
+        FROM endpoint_hit_hour_legacy l
+        JOIN stats_app a ON a.name = l.app
+        JOIN stats_uri u ON u.name = l.uri;
+        DROP TABLE endpoint_hit_hour_legacy;
+    END IF;
+END';
+
+SELECT stats_load_legacy_layout();
+
+INSERT INTO endpoint_hit_minute (app_id, uri_id, bucket, hits)
+SELECT app_id, uri_id, date_trunc('minute', timestamp), SUM(hit_count)
+FROM endpoint_hit
+WHERE NOT EXISTS (SELECT 1 FROM endpoint_hit_minute)
+GROUP BY app_id, uri_id, date_trunc('minute', timestamp);
+
+INSERT INTO endpoint_hit_hour (app_id, uri_id, bucket, hits)
+SELECT app_id, uri_id, date_trunc('hour', timestamp), SUM(hit_count)
+FROM endpoint_hit
+WHERE NOT EXISTS (SELECT 1 FROM endpoint_hit_hour)
+GROUP BY app_id, uri_id, date_trunc('hour', timestamp);
+
+CREATE TABLE IF NOT EXISTS uri_visitor (
+    uri_id INTEGER NOT NULL,
+    app_id INTEGER NOT NULL,
+    ip INET NOT NULL,
+    PRIMARY KEY (uri_id, app_id, ip)
+);
+
+CREATE TABLE IF NOT EXISTS uri_lifetime (
+    uri_id INTEGER NOT NULL,
+    app_id INTEGER NOT NULL,
+    visitors BIGINT NOT NULL,
+    first_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (uri_id, app_id)
+);
+
+INSERT INTO uri_visitor (uri_id, app_id, ip)
+SELECT DISTINCT uri_id, app_id, ip
+FROM endpoint_hit
+WHERE NOT EXISTS (SELECT 1 FROM uri_visitor);
+
+INSERT INTO uri_lifetime (uri_id, app_id, visitors, first_seen, last_seen)
+SELECT uri_id, app_id, COUNT(DISTINCT ip), MIN(timestamp), MAX(timestamp)
+FROM endpoint_hit
+WHERE NOT EXISTS (SELECT 1 FROM uri_lifetime)
+GROUP BY uri_id, app_id;
+
+CREATE OR REPLACE FUNCTION hit_sampled(ip INET) RETURNS BOOLEAN
+LANGUAGE SQL IMMUTABLE AS 'SELECT (hashtext(host(ip)) & 2147483647) % 100 = 0';
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_sample (
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip INET NOT NULL,
     timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
 );
 
-CREATE INDEX IF NOT EXISTS idx_endpoint_hit_uri ON endpoint_hit(uri);
-CREATE INDEX IF NOT EXISTS idx_endpoint_hit_timestamp ON endpoint_hit(timestamp);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_endpoint_hit_sample_timestamp ON endpoint_hit_sample(timestamp);
+
+INSERT INTO endpoint_hit_sample (app_id, uri_id, ip, timestamp)
+SELECT app_id, uri_id, ip, timestamp
+FROM endpoint_hit
+WHERE hit_sampled(ip)
+AND NOT EXISTS (SELECT 1 FROM endpoint_hit_sample);
+
+CREATE TABLE IF NOT EXISTS endpoint_latency (
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    histogram BYTEA,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_latency_bucket ON endpoint_latency(bucket);
+
+CREATE TABLE IF NOT EXISTS endpoint_latency_hour (
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    histogram BYTEA,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_latency_hour_bucket ON endpoint_latency_hour(bucket);
@@ -0,0 +1,96 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.repository.DictionaryRepository;
+import ru.practicum.repository.DictionaryRepository.Dimension;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UriTrieTest {
+    private DictionaryRepository repository;
+    private UriTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(DictionaryRepository.class);
+        when(repository.findAfter(eq(Dimension.URI), anyInt())).thenReturn(Map.of(
+                "/events", 1,
+                "/events/1", 2,
+                "/events/2", 3,
+                "/events/2/requests", 4,
+                "/categories/1", 5));
+        trie = new UriTrie(repository, Duration.ofHours(1), 100);
+    }
+
+    @Test
+    void detectsPatterns() {
+        assertThat(UriTrie.isPattern("/events/*")).isTrue();
+        assertThat(UriTrie.isPattern("/events/**")).isTrue();
+        assertThat(UriTrie.isPattern("/events/1")).isFalse();
+    }
+
+    @Test
+    void singleStarMatchesExactlyOneSegment() {
+        assertThat(trie.match("/events/*")).isEqualTo(Map.of("/events/1", 2, "/events/2", 3));
+        assertThat(trie.match("/*/1")).isEqualTo(Map.of("/events/1", 2, "/categories/1", 5));
+    }
+
+    @Test
+    void doubleStarMatchesAnyNumberOfSegments() {
+        assertThat(trie.match("/events/**")).isEqualTo(Map.of(
+                "/events", 1, "/events/1", 2, "/events/2", 3, "/events/2/requests", 4));
+        assertThat(trie.match("/**/requests")).isEqualTo(Map.of("/events/2/requests", 4));
+        assertThat(trie.match("/**")).hasSize(5);
+    }
+
+    @Test
+    void returnsEmptyWhenNothingMatches() {
+        assertThat(trie.match("/users/*")).isEmpty();
+    }
+
+    @Test
+    void rejectsPartialWildcardSegments() {
+        assertThatThrownBy(() -> trie.match("/events/1*"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsPatternsExpandingPastLimit() {
+        UriTrie limited = new UriTrie(repository, Duration.ofHours(1), 3);
+
+        assertThat(limited.match("/events/*")).hasSize(2);
+        assertThatThrownBy(() -> limited.match("/**"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void learnsAddedUrisWithoutReload() {
+        trie.match("/events/*");
+
+        trie.add("/events/3", 6);
+
+        assertThat(trie.match("/events/*")).containsEntry("/events/3", 6).hasSize(3);
+        verify(repository, times(1)).findAfter(eq(Dimension.URI), anyInt());
+    }
+
+    @Test
+    void refreshesUrisCreatedElsewhere() {
+        UriTrie refreshing = new UriTrie(repository, Duration.ZERO, 100);
+        refreshing.match("/events/*");
+        when(repository.findAfter(eq(Dimension.URI), anyInt())).thenReturn(Map.of("/events/7", 7));
+
+        assertThat(refreshing.match("/events/*")).containsEntry("/events/7", 7).hasSize(3);
+        verify(repository, times(2)).findAfter(Dimension.URI, 0);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountMinSketchTest {
+
+    @Test
+    void countsExactlyWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(4, 2048);
+
+        sketch.add(1L, 5);
+        sketch.add(2L, 3);
+        sketch.add(1L, 2);
+
+        assertThat(sketch.estimate(1L)).isEqualTo(7);
+        assertThat(sketch.estimate(2L)).isEqualTo(3);
+        assertThat(sketch.estimate(3L)).isZero();
+    }
+
+    @Test
+    void neverUnderestimatesAndStaysWithinErrorBound() {
+        int width = 256;
+        CountMinSketch sketch = new CountMinSketch(4, width);
+        long total = 0;
+        for (long key = 0; key < 5000; key++) {
+            long count = key % 7 + 1;
+            sketch.add(key, count);
+            total += count;
+        }
+
+        long bound = Math.round(Math.E / width * total);
+        int overBound = 0;
+        for (long key = 0; key < 5000; key++) {
+            long estimate = sketch.estimate(key);
+            assertThat(estimate).isGreaterThanOrEqualTo(key % 7 + 1);
+            if (estimate - (key % 7 + 1) > bound) {
+                overBound++;
+            }
+        }
+        assertThat(overBound).isLessThan(5000 / 20);
+    }
+
+    @Test
+    void clearResetsCounts() {
+        CountMinSketch sketch = new CountMinSketch(2, 64);
+        sketch.add(42L, 10);
+
+        sketch.clear();
+
+        assertThat(sketch.estimate(42L)).isZero();
+    }
+
+    @Test
+    void rejectsInvalidDimensions() {
+        assertThatThrownBy(() -> new CountMinSketch(0, 16)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(9, 16)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(4, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesSmallCardinalityExactlyEnough() {
+        HyperLogLog sketch = sketchOf(0, 100);
+
+        assertThat(sketch.estimate()).isCloseTo(100L, within(2L));
+    }
+
+    @Test
+    void ignoresRepeatedValues() {
+        HyperLogLog sketch = sketchOf(0, 1000);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertThat(sketch.estimate()).isCloseTo(1000L, within(50L));
+    }
+
+    @Test
+    void staysWithinErrorBoundOnLargeCardinality() {
+        long expected = 200_000;
+        HyperLogLog sketch = sketchOf(0, (int) expected);
+
+        double error = Math.abs(sketch.estimate() - expected) / (double) expected;
+        assertThat(error).isLessThan(HyperLogLog.relativeError());
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = sketchOf(0, 30_000);
+        HyperLogLog right = sketchOf(20_000, 50_000);
+        HyperLogLog union = sketchOf(0, 50_000);
+
+        left.merge(right);
+
+        assertThat(left.estimate()).isEqualTo(union.estimate());
+        assertThat(left.toBytes()).isEqualTo(union.toBytes());
+    }
+
+    @Test
+    void mergesSparseIntoDense() {
+        HyperLogLog dense = sketchOf(0, 10_000);
+        HyperLogLog sparse = sketchOf(10_000, 10_050);
+        HyperLogLog union = sketchOf(0, 10_050);
+
+        dense.merge(sparse);
+
+        assertThat(dense.toBytes()).isEqualTo(union.toBytes());
+    }
+
+    @Test
+    void roundTripsSparseSketch() {
+        HyperLogLog sketch = sketchOf(0, 50);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes.length).isLessThan(1 << HyperLogLog.PRECISION);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+
+    @Test
+    void roundTripsDenseSketch() {
+        HyperLogLog sketch = sketchOf(0, 20_000);
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes.length).isEqualTo(2 + (1 << HyperLogLog.PRECISION));
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(bytes);
+    }
+
+    @Test
+    void rejectsForeignPrecision() {
+        byte[] bytes = sketchOf(0, 10).toBytes();
+        bytes[0] = HyperLogLog.PRECISION + 1;
+
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(bytes))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(ip(i));
+        }
+        return sketch;
+    }
+
+    private static byte[] ip(int value) {
+        return ByteBuffer.allocate(4).putInt(0x0A000000 + value).array();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyBelowCapacity() {
+        SpaceSaving sketch = new SpaceSaving(3);
+
+        sketch.add(1L, 2);
+        sketch.add(2L, 1);
+        sketch.add(1L, 3);
+
+        assertThat(sketch.keys()).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(sketch.count(1L)).isEqualTo(5);
+        assertThat(sketch.count(2L)).isEqualTo(1);
+    }
+
+    @Test
+    void evictsMinimumAndInheritsItsCount() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.add(1L, 5);
+        sketch.add(2L, 1);
+
+        sketch.add(3L, 1);
+
+        assertThat(sketch.keys()).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(sketch.count(3L)).isEqualTo(2);
+        assertThat(sketch.count(2L)).isZero();
+    }
+
+    @Test
+    void keepsHeavyHittersInSkewedStream() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        long total = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (long heavy = 0; heavy < 3; heavy++) {
+                sketch.add(heavy, 1);
+                total++;
+            }
+            sketch.add(1000L + round, 1);
+            total++;
+        }
+
+        assertThat(sketch.keys()).contains(0L, 1L, 2L).hasSize(10);
+        for (long heavy = 0; heavy < 3; heavy++) {
+            assertThat(sketch.count(heavy)).isBetween(1000L, 1000L + total / 10);
+        }
+    }
+
+    @Test
+    void clearForgetsAllKeys() {
+        SpaceSaving sketch = new SpaceSaving(2);
+        sketch.add(1L, 1);
+        sketch.add(2L, 1);
+        sketch.add(3L, 1);
+
+        sketch.clear();
+        sketch.add(4L, 1);
+
+        assertThat(sketch.keys()).containsExactly(4L);
+        assertThat(sketch.count(4L)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}